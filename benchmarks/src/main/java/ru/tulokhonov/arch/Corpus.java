@@ -0,0 +1,126 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Наборы файлов для бенчмарков. Генерируются детерминированно при первом использовании в папку
+ * из свойства {@code archiver.corpus} (по умолчанию {@code archiver-corpus} во временной папке)
+ * и переиспользуются следующими запусками и форками JMH
+ */
+public enum Corpus {
+    /** Много маленьких текстовых файлов */
+    TINY {
+        @Override
+        void generate(Path root, Random random) throws IOException {
+            for (int i = 0; i < 20_000; i++)
+                writeText(root.resolve(String.format("d%03d/f%05d.txt", i % 200, i)), 64 + random.nextInt(960), random);
+        }
+    },
+    /** Несколько больших текстовых файлов */
+    HUGE {
+        @Override
+        void generate(Path root, Random random) throws IOException {
+            for (int i = 0; i < 3; i++)
+                writeText(root.resolve("huge" + i + ".txt"), 128 * MB, random);
+        }
+    },
+    /** Несжимаемые двоичные файлы */
+    INCOMPRESSIBLE {
+        @Override
+        void generate(Path root, Random random) throws IOException {
+            for (int i = 0; i < 16; i++)
+                writeRandom(root.resolve("random" + i + ".bin"), 8 * MB, random);
+        }
+    },
+    /** Глубокие деревья директорий с небольшими файлами на каждом уровне */
+    DEEP {
+        @Override
+        void generate(Path root, Random random) throws IOException {
+            for (int chain = 0; chain < 8; chain++) {
+                Path dir = root.resolve("c" + chain);
+                for (int depth = 0; depth < 128; depth++) {
+                    dir = dir.resolve("d" + depth);
+                    for (int i = 0; i < 4; i++)
+                        writeText(dir.resolve("f" + i + ".txt"), 256 + random.nextInt(4096), random);
+                }
+            }
+        }
+    };
+
+    static final int MB = 1024 * 1024;
+    private static final String COMPLETE_MARKER = ".complete";
+    private static final String[] WORDS = ("архив файл папка сжатие данные поток буфер запись чтение zip deflate " +
+            "the quick brown fox jumps over lazy dog lorem ipsum dolor sit amet 0 1 2 3 4 5 6 7 8 9").split(" ");
+
+    abstract void generate(Path root, Random random) throws IOException;
+
+    /**
+     * Возвращает путь к набору, генерируя его при необходимости
+     * @return корневая папка набора
+     * @throws IOException при ошибке записи файлов
+     */
+    synchronized Path ensure() throws IOException {
+        Path root = Paths.get(System.getProperty("archiver.corpus",
+                Paths.get(System.getProperty("java.io.tmpdir"), "archiver-corpus").toString()), name().toLowerCase());
+        if (Files.exists(root.resolve(COMPLETE_MARKER)))
+            return root;
+        if (Files.exists(root))
+            Utils.getAllFilesInDir(root.toString()).stream()
+                    .sorted((a, b) -> b.getPath().length() - a.getPath().length())
+                    .forEach(File::delete);
+        Files.createDirectories(root);
+        generate(root, new Random(ordinal()));
+        Files.createFile(root.resolve(COMPLETE_MARKER));
+        return root;
+    }
+
+    /**
+     * @param root корневая папка набора
+     * @return файлы набора без служебного маркера
+     */
+    static List<Path> files(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> !p.getFileName().toString().equals(COMPLETE_MARKER))
+                    .collect(toList());
+        }
+    }
+
+    private static void writeText(Path file, int chars, Random random) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file.toFile()), StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            int written = 0;
+            while (written < chars) {
+                line.setLength(0);
+                int words = 4 + random.nextInt(12);
+                for (int i = 0; i < words; i++)
+                    line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                line.append('\n');
+                int length = Math.min(line.length(), chars - written);
+                writer.append(line, 0, length);
+                written += length;
+            }
+        }
+    }
+
+    private static void writeRandom(Path file, int size, Random random) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream os = new FileOutputStream(file.toFile())) {
+            for (int written = 0; written < size; written += buffer.length) {
+                random.nextBytes(buffer);
+                os.write(buffer, 0, Math.min(buffer.length, size - written));
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.tulokhonov.arch;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость перечисления файлов {@link Utils#getFiles(String[])}, {@link Utils#getAllFilesInDir(String)}
+ * и построения имен записей {@link Utils#getZipEntryName(Path)}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FilesBenchmark {
+    @Param({"TINY", "DEEP"})
+    public Corpus corpus;
+
+    private String root;
+    private List<Path> paths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = corpus.ensure().toString();
+        paths = Corpus.files(corpus.ensure());
+    }
+
+    @Benchmark
+    public List<File> getFiles(Throughput throughput) {
+        List<File> files = Utils.getFiles(new String[] { root });
+        throughput.add(0, files.size());
+        return files;
+    }
+
+    @Benchmark
+    public List<File> getAllFilesInDir(Throughput throughput) {
+        List<File> files = Utils.getAllFilesInDir(root);
+        throughput.add(0, files.size());
+        return files;
+    }
+
+    @Benchmark
+    public void getZipEntryName(Throughput throughput, Blackhole blackhole) {
+        for (Path path : paths)
+            blackhole.consume(Utils.getZipEntryName(path));
+        throughput.add(0, paths.size());
+    }
+}
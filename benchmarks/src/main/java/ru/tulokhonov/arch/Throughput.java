@@ -0,0 +1,28 @@
+package ru.tulokhonov.arch;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Дополнительные счетчики бенчмарков. JMH выводит их как скорость в секунду: МБ/с и файлов/с
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+    public double megabytes;
+    public long files;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        megabytes = 0;
+        files = 0;
+    }
+
+    void add(long bytes, long count) {
+        megabytes += bytes / (double) Corpus.MB;
+        files += count;
+    }
+}
@@ -0,0 +1,65 @@
+package ru.tulokhonov.arch;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость извлечения: последовательное чтение потока {@link Utils#unZip(InputStream, Path)}
+ * и параллельное извлечение из файла {@link Utils#unZip(Path, Path, ArchiveOptions)}.
+ * Архив набора создается один раз, файлы извлекаются поверх результатов предыдущего вызова
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UnzipBenchmark {
+    @Param({"TINY", "HUGE", "INCOMPRESSIBLE", "DEEP"})
+    public Corpus corpus;
+
+    private Path archive;
+    private Path target;
+    private long bytes;
+    private long count;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path root = corpus.ensure();
+        for (Path file : Corpus.files(root)) {
+            bytes += Files.size(file);
+            count++;
+        }
+        Path work = Files.createTempDirectory("archiver-unzip");
+        archive = work.resolve("corpus.zip");
+        target = work.resolve("unzipped");
+        try (OutputStream os = new FileOutputStream(archive.toFile())) {
+            Utils.zip(Utils.getFiles(new String[] { root.toString() }), os);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Utils.getAllFilesInDir(archive.getParent().toString()).stream()
+                .sorted((a, b) -> b.getPath().length() - a.getPath().length())
+                .forEach(File::delete);
+    }
+
+    @Benchmark
+    public void unZipStream(Throughput throughput) throws IOException {
+        try (InputStream is = new FileInputStream(archive.toFile())) {
+            Utils.unZip(is, target);
+        }
+        throughput.add(bytes, count);
+    }
+
+    @Benchmark
+    public void unZipParallel(Throughput throughput) {
+        Utils.unZip(archive, target, new ArchiveOptions().setThreads(0));
+        throughput.add(bytes, count);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.tulokhonov.arch;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Скорость архивации {@link Utils#zip(List, OutputStream, ArchiveOptions)} на разных наборах файлов.
+ * Архив пишется в поток, отбрасывающий данные, чтобы измерялись чтение и сжатие
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZipBenchmark {
+    @Param({"TINY", "HUGE", "INCOMPRESSIBLE", "DEEP"})
+    public Corpus corpus;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private List<File> files;
+    private long bytes;
+    private long count;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        files = Utils.getFiles(new String[] { corpus.ensure().toString() });
+        for (File file : files)
+            if (file.isFile()) {
+                bytes += file.length();
+                count++;
+            }
+    }
+
+    @Benchmark
+    public long zip(Throughput throughput) {
+        CountingOutputStream output = new CountingOutputStream();
+        Utils.zip(files, output, new ArchiveOptions().setThreads(threads));
+        throughput.add(bytes, count);
+        return output.count;
+    }
+
+    /**
+     * Поток, который только считает записанные байты
+     */
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
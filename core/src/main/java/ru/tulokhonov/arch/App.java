@@ -0,0 +1,232 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class App 
+{
+    public static void main( String[] args ) throws Exception
+    {
+        Handler globalExceptionHandler = new Handler();
+        Thread.setDefaultUncaughtExceptionHandler(globalExceptionHandler);
+
+        Options options = Options.parse(args);
+        FileInputStream stdin = new FileInputStream(FileDescriptor.in);
+
+        if (options.server() > 0) {
+            try (ArchiveServer server = new ArchiveServer(options.server())) {
+                System.err.println("Сервер архиватора принимает команды на порту " + server.port()
+                        + ", ключ доступа: " + ServerProtocol.tokenFile(server.port()));
+                // Сервер обычно останавливают сигналом, файл ключа удаляется и в этом случае
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        server.close();
+                    } catch (IOException ignored) {
+                        // JVM завершается
+                    }
+                }));
+                server.run();
+            }
+            return;
+        }
+        if (options.connect() > 0) {
+            System.exit(new ArchiveClient(options.connect()).run(args, Paths.get(""), stdin, stdin.available() > 0,
+                    new FileOutputStream(FileDescriptor.out), new FileOutputStream(FileDescriptor.err)));
+        }
+        // Поток поверх дескриптора, чтобы записи без сжатия копировались в stdout через FileChannel
+        run(options, Paths.get("./"), stdin, stdin.available() > 0, new FileOutputStream(FileDescriptor.out), System.err);
+    }
+
+    /**
+     * Выполняет команду. Используется при запуске из командной строки и сервером архиватора
+     * @param options параметры командной строки
+     * @param directory папка, относительно которой разрешаются пути к архивам и в которую извлекаются записи
+     * @param in входные данные: Zip файл для извлечения
+     * @param hasInput да, если входные данные переданы
+     * @param out выходные данные: архив или список записей
+     * @param err поток для прогресса
+     * @throws Exception при ошибке выполнения команды
+     */
+    static void run(Options options, Path directory, InputStream in, boolean hasInput, OutputStream out, PrintStream err) throws Exception {
+        ArchiveOptions archiveOptions = options.archiveOptions();
+        if (archiveOptions.getBaseArchive() != null)
+            archiveOptions.setBaseArchive(directory.resolve(archiveOptions.getBaseArchive()));
+        if (!options.progress()) {
+            execute(options, directory, in, hasInput, out);
+            return;
+        }
+        ArchiveStatistics statistics = new ArchiveStatistics();
+        archiveOptions.setListener(statistics);
+        try (ProgressReporter ignored = new ProgressReporter(statistics, err)) {
+            execute(options, directory, in, hasInput, out);
+        }
+    }
+
+    private static void execute(Options options, Path directory, InputStream in, boolean hasInput, OutputStream out) throws Exception {
+        if (options.list() != null)
+            printList(Utils.list(directory.resolve(options.list())), new PrintStream(out, true));
+        else if (options.verify() != null)
+            verify(options, directory, in, out);
+        else if (options.merge())
+            merge(options, directory, out);
+        else if (options.shardPlan() >= 0 || options.shard() >= 0 || options.stitch())
+            shards(options, directory, out);
+        else if (options.extract() != null && !options.paths().isEmpty())
+            Utils.unZip(directory.resolve(options.extract()), directory, options.paths(), options.extractOptions());
+        else if (options.extract() != null)
+            Utils.unZip(directory.resolve(options.extract()), directory, options.extractOptions());
+        else if (hasInput) {
+            // Если на вход перенаправлен обычный файл, записи извлекаются параллельно по центральному каталогу
+            FileChannel channel = in instanceof FileInputStream ? ((FileInputStream) in).getChannel() : null;
+            if (channel != null && Utils.isSeekable(channel))
+                Utils.unZip(channel, directory, options.extractOptions());
+            else
+                Utils.unZip(new BufferedInputStream(in), directory, options.extractOptions());
+        }
+        else if (!options.paths().isEmpty())
+            try (Stream<File> files = Utils.streamFiles(options.paths().toArray(new String[0]), options.archiveOptions())) {
+                Utils.zip(files, out, options.archiveOptions());
+            }
+        else
+            new PrintStream(out, true).println("Простой архиватор. Архивирует и извлекает файлы и папки из архива с использованием алгоритма Zip. Использование:\n" +
+                    "Для создания Zip архива к имени выполняемого файла добавьте через пробел список файлов и директорий для архивации, а затем перенаправьте вывод в новый zip-файл.\n" +
+                    "Пример: ./archiver ./file1 ./file2 ./dir1 > archive.zip\n" +
+                    "Параметры архивации:\n" +
+                    "  --threads[=N]   параллельное сжатие в N потоков (по умолчанию по числу процессоров)\n" +
+                    "  --memory=SIZE   ограничение памяти для параллельного сжатия, например 64m\n" +
+                    "  --profile=P     профиль сжатия: speed, balanced (по умолчанию) или ratio\n" +
+                    "  --walk-threads[=N] параллельный обход директорий в N потоков\n" +
+                    "  --sorted        упорядочить содержимое директорий по имени при параллельном обходе\n" +
+                    "  --incremental=FILE перенести неизмененные файлы из предыдущего архива FILE без повторного сжатия\n" +
+                    "  --solid         сжимать небольшие файлы блоками одним потоком (архив извлекается только этим архиватором)\n" +
+                    "  --progress      выводить в stderr прогресс и итоговую статистику в формате JSON (также при извлечении)\n" +
+                    "Для извлечения файлов и папок из zip-файла перенаправьте вывод файла zip архиватору. Данные будут извлечены в текущую папку. Файлы и папки с одинаковыми именами будут перезаписаны.\n" +
+                    "Пример: cat archive.zip | ./archiver\n" +
+                    "Если Zip файл передан на вход перенаправлением (./archiver < archive.zip) или параметром --extract=archive.zip, " +
+                    "записи извлекаются параллельно\n" +
+                    "  --list=FILE     вывести список записей архива FILE\n" +
+                    "  --verify[=FILE] проверить архив FILE или stdin без извлечения и вывести отчет в формате JSON\n" +
+                    "  --source=DIR    при проверке сравнить записи с файлами папки DIR\n" +
+                    "  --merge         объединить архивы, заданные путями, без повторного сжатия и вывести результат в stdout\n" +
+                    "  --include=GLOB  при объединении взять только записи с таким именем или шаблоном (можно повторять)\n" +
+                    "  --exclude=GLOB  при объединении пропустить записи с таким именем или шаблоном (можно повторять)\n" +
+                    "  --duplicates=first|last|fail  какую из одноименных записей оставить при объединении, по умолчанию first\n" +
+                    "  --shard-plan=N  разделить файлы и папки, заданные путями, на N частей и вывести план в stdout\n" +
+                    "  --shard=K --plan=FILE  архивировать часть K плана FILE и вывести результат в stdout\n" +
+                    "  --stitch        сшить архивы частей, заданные путями, в один без повторного сжатия и вывести в stdout\n" +
+                    "  --server[=PORT] запустить сервер архиватора на loopback-адресе (порт по умолчанию " + ArchiveServer.DEFAULT_PORT + ")\n" +
+                    "  --connect[=PORT] выполнить команду на запущенном сервере архиватора\n" +
+                    "Пример: ./archiver --extract=archive.zip conf/app.yml 'logs/*.log' - извлечь только указанные записи и записи, соответствующие шаблонам"
+            );
+    }
+
+    /**
+     * Проверяет архив из файла или stdin и выводит отчет в формате JSON
+     * @throws ExtractionException если архив не прошел проверку
+     */
+    private static void verify(Options options, Path directory, InputStream in, OutputStream out) {
+        Path source = options.source() == null ? null : directory.resolve(options.source());
+        VerifyReport report;
+        if (!Options.STDIN.equals(options.verify()))
+            report = Utils.verify(directory.resolve(options.verify()), source, options.extractOptions());
+        else if (in instanceof FileInputStream && Utils.isSeekable(((FileInputStream) in).getChannel()))
+            report = new ArchiveVerifier(options.extractOptions()).verify(((FileInputStream) in).getChannel(), source);
+        else
+            report = Utils.verify(new BufferedInputStream(in), source, options.extractOptions());
+        new PrintStream(out, true).println(report.toJson());
+        if (!report.isOk())
+            throw new ExtractionException("Ошибка! Архив не прошел проверку, ошибок: " + report.getFailureCount());
+    }
+
+    /**
+     * Объединяет архивы, заданные путями, в выходной поток
+     * @throws IllegalArgumentException если архивы не заданы
+     */
+    private static void merge(Options options, Path directory, OutputStream out) {
+        if (options.paths().isEmpty())
+            throw new IllegalArgumentException("Ошибка! Не заданы архивы для объединения");
+        List<Path> archives = new ArrayList<>();
+        for (String path : options.paths())
+            archives.add(directory.resolve(path));
+        Utils.merge(archives, out, options.include(), options.exclude(), options.archiveOptions());
+    }
+
+    /**
+     * Создает план частей, архивирует одну часть плана или сшивает архивы частей
+     * @throws IllegalArgumentException если не заданы пути или план, либо включен режим solid или инкрементальная архивация
+     */
+    private static void shards(Options options, Path directory, OutputStream out) throws IOException {
+        ArchiveOptions archiveOptions = options.archiveOptions();
+        if (options.shard() >= 0) {
+            if (options.plan() == null)
+                throw new IllegalArgumentException("Ошибка! Не задан план частей (--plan)");
+            // Служебные записи частей совпали бы по именам в сшитом архиве
+            if (archiveOptions.isSolid() || archiveOptions.getBaseArchive() != null)
+                throw new IllegalArgumentException("Ошибка! Архивация по частям не поддерживает режим solid и инкрементальную архивацию");
+            List<File> files;
+            try (InputStream is = new FileInputStream(directory.resolve(options.plan()).toFile())) {
+                files = Shards.readPlan(is, options.shard(), archiveOptions);
+            }
+            Utils.zip(files, out, archiveOptions);
+            return;
+        }
+        if (options.paths().isEmpty())
+            throw new IllegalArgumentException("Ошибка! Не заданы пути");
+        if (options.stitch()) {
+            List<Path> parts = new ArrayList<>();
+            for (String path : options.paths())
+                parts.add(directory.resolve(path));
+            Utils.stitch(parts, out);
+            return;
+        }
+        List<File> files;
+        try (Stream<File> stream = Utils.streamFiles(options.paths().toArray(new String[0]), archiveOptions)) {
+            files = stream.collect(Collectors.toList());
+        }
+        Shards.writePlan(Utils.planShards(files, options.shardPlan()), out, archiveOptions);
+        out.flush();
+    }
+
+    /**
+     * Выводит список записей: размер, размер сжатых данных, время изменения и имя
+     */
+    private static void printList(List<ZipRecord> records, PrintStream printStream) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%12s %12s %-16s %s%n", "Размер", "Сжато", "Изменен", "Имя"));
+        long size = 0;
+        long compressedSize = 0;
+        for (ZipRecord record : records) {
+            out.append(String.format("%12d %12d %-16s %s%n", record.getSize(), record.getCompressedSize(),
+                    format.format(new Date(record.getTime())), record.getName()));
+            size += record.getSize();
+            compressedSize += record.getCompressedSize();
+        }
+        out.append(String.format("%12d %12d %-16s записей: %d", size, compressedSize, "", records.size()));
+        printStream.println(out);
+    }
+
+    /**
+     * Класс перехвата исключений unhandled exceptions
+     */
+    static class Handler implements Thread.UncaughtExceptionHandler {
+        /**
+         * Выводит сообщение об ошибке
+         * @param t текущий thread
+         * @param e перехваченное исключение
+         */
+        public void uncaughtException(Thread t, Throwable e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
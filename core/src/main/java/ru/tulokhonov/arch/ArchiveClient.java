@@ -0,0 +1,110 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.tulokhonov.arch.ServerProtocol.*;
+
+/**
+ * Клиент сервера архиватора: передает серверу аргументы командной строки, рабочую папку и stdin
+ * и выводит полученные stdout и stderr. Использует только классы протокола, поэтому запускается быстро
+ */
+class ArchiveClient {
+    private final int port;
+
+    /**
+     * @param port порт сервера на loopback-адресе
+     */
+    ArchiveClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Выполняет команду на сервере
+     * @param args аргументы командной строки. Параметр --connect серверу не передается
+     * @param directory рабочая папка, относительно которой сервер разрешает пути
+     * @param in входные данные команды
+     * @param hasInput да, если входные данные нужно передать серверу
+     * @param out поток для stdout команды
+     * @param err поток для stderr команды
+     * @return код возврата команды
+     * @throws IOException если сервер недоступен, нет файла ключа доступа или соединение прервано
+     */
+    int run(String[] args, Path directory, InputStream in, boolean hasInput, OutputStream out, OutputStream err) throws IOException {
+        String token = readToken(port);
+        Socket socket;
+        try {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        } catch (ConnectException e) {
+            throw new IOException("Ошибка! Сервер архиватора не запущен на порту " + port, e);
+        }
+        try (Socket ignored = socket) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), FRAME_SIZE));
+            List<String> forwarded = new ArrayList<>();
+            for (String arg : args)
+                if (!arg.equals("--connect") && !arg.startsWith("--connect="))
+                    forwarded.add(arg);
+            request.writeInt(MAGIC);
+            request.writeUTF(token);
+            request.writeUTF(directory.toAbsolutePath().normalize().toString());
+            request.writeInt(forwarded.size());
+            for (String arg : forwarded)
+                request.writeUTF(arg);
+            request.writeBoolean(hasInput);
+            request.flush();
+            if (hasInput) {
+                Thread sender = new Thread(() -> send(in, request), "archiver-client-input");
+                sender.setDaemon(true);
+                sender.start();
+            }
+
+            DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream(), FRAME_SIZE));
+            byte[] buffer = new byte[FRAME_SIZE];
+            while (true) {
+                int channel = response.readUnsignedByte();
+                int length = response.readInt();
+                if (channel == END) {
+                    out.flush();
+                    return length;
+                }
+                if ((channel != STDOUT && channel != STDERR) || length < 0 || length > FRAME_SIZE)
+                    throw new IOException("Ошибка! Неверный кадр протокола сервера архиватора");
+                response.readFully(buffer, 0, length);
+                if (channel == STDOUT) {
+                    out.write(buffer, 0, length);
+                } else {
+                    out.flush();
+                    err.write(buffer, 0, length);
+                    err.flush();
+                }
+            }
+        } catch (EOFException e) {
+            throw new IOException("Ошибка! Соединение с сервером архиватора прервано", e);
+        }
+    }
+
+    /**
+     * Передает входные данные кадрами. Если сервер завершил команду, не дочитав их, ошибка записи игнорируется
+     */
+    private static void send(InputStream in, DataOutputStream request) {
+        byte[] buffer = new byte[FRAME_SIZE];
+        try {
+            int n;
+            while ((n = in.read(buffer)) >= 0)
+                if (n > 0)
+                    writeFrame(request, STDIN, buffer, 0, n);
+            writeFrame(request, STDIN, buffer, 0, 0);
+            synchronized (request) {
+                request.flush();
+            }
+        } catch (IOException ignored) {
+            // Сервер закрыл соединение
+        }
+    }
+}
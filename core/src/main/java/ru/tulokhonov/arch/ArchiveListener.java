@@ -0,0 +1,25 @@
+package ru.tulokhonov.arch;
+
+/**
+ * Получатель событий архивации и извлечения. При параллельной обработке методы вызываются из разных потоков,
+ * поэтому реализация должна быть потокобезопасной и быстрой
+ */
+public interface ArchiveListener {
+    /** Получатель, игнорирующий события */
+    ArchiveListener NONE = new ArchiveListener() {
+    };
+
+    /**
+     * Вызывается после получения очередного файла или папки от обхода директорий
+     * @param nanos время ожидания файла в наносекундах
+     */
+    default void entryEnumerated(long nanos) {
+    }
+
+    /**
+     * Вызывается после записи записи в архив или извлечения записи
+     * @param entry статистика записи
+     */
+    default void entryCompleted(EntryStatistics entry) {
+    }
+}
@@ -0,0 +1,164 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+/**
+ * Манифест архива: путь, размер, время изменения и CRC32 каждого файла. Хранится в архиве служебной записью
+ * {@link #ENTRY_NAME} и используется при инкрементальной архивации для поиска неизмененных файлов.
+ * Формат - текст UTF-8, по строке на файл: crc, размер, время изменения в миллисекундах и имя через табуляцию.
+ * В имени обратная косая черта, перевод строки, возврат каретки и табуляция записываются как \\, \n, \r и \t,
+ * так как в Linux они допустимы в именах файлов. Манифесты первой версии без экранирования читаются как есть
+ */
+class ArchiveManifest {
+    /** Префикс служебных записей архиватора. Отмеченные записи с этим префиксом не извлекаются */
+    static final String SERVICE_PREFIX = ".archiver/";
+    static final String ENTRY_NAME = SERVICE_PREFIX + "manifest";
+    private static final String HEADER = "# archiver manifest v2";
+    private static final String HEADER_V1 = "# archiver manifest v1";
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Добавляет файл в манифест
+     * @param name имя записи
+     * @param size размер файла
+     * @param time время изменения файла в миллисекундах
+     * @param crc контрольная сумма CRC32
+     */
+    void add(String name, long size, long time, long crc) {
+        entries.put(name, new Entry(size, time, crc));
+    }
+
+    /**
+     * @param name имя записи
+     * @return сведения о файле или null, если файла нет в манифесте
+     */
+    Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return количество файлов в манифесте
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Записывает манифест в поток. Поток не закрывается
+     * @param os выходной поток
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void write(OutputStream os) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        writer.write(HEADER);
+        writer.write('\n');
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            Entry e = entry.getValue();
+            writer.write(Long.toHexString(e.crc) + '\t' + e.size + '\t' + e.time + '\t' + escape(entry.getKey()) + '\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Читает манифест из потока
+     * @param is входной поток
+     * @return манифест
+     * @throws IOException если формат манифеста неверный или при ошибке ввода-вывода
+     */
+    static ArchiveManifest read(InputStream is) throws IOException {
+        ArchiveManifest manifest = new ArchiveManifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        boolean escaped = HEADER.equals(header);
+        if (!escaped && !HEADER_V1.equals(header))
+            throw new IOException("Ошибка! Неверный формат манифеста архива");
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", 4);
+            if (fields.length != 4)
+                throw new IOException("Ошибка! Неверная строка манифеста архива: " + line);
+            try {
+                manifest.add(escaped ? unescape(fields[3], line) : fields[3], Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[0], 16));
+            } catch (NumberFormatException e) {
+                throw new IOException("Ошибка! Неверная строка манифеста архива: " + line, e);
+            }
+        }
+        return manifest;
+    }
+
+    private static String escape(String name) {
+        StringBuilder escaped = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String name, String line) throws IOException {
+        if (name.indexOf('\\') < 0)
+            return name;
+        StringBuilder unescaped = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '\\') {
+                unescaped.append(c);
+                continue;
+            }
+            char next = ++i < name.length() ? name.charAt(i) : 0;
+            switch (next) {
+                case '\\': unescaped.append('\\'); break;
+                case 'n': unescaped.append('\n'); break;
+                case 'r': unescaped.append('\r'); break;
+                case 't': unescaped.append('\t'); break;
+                default: throw new IOException("Ошибка! Неверная строка манифеста архива: " + line);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Проверяет, является ли запись служебной записью архиватора. Запись с префиксом {@link #SERVICE_PREFIX}
+     * без отметки архиватора, например файл из папки .archiver пользователя, считается обычной
+     * @param record запись центрального каталога
+     * @return да, если запись служебная
+     */
+    static boolean isServiceEntry(ZipRecord record) {
+        return record.service && record.name.startsWith(SERVICE_PREFIX);
+    }
+
+    /**
+     * Проверяет, является ли запись служебной записью архиватора, по локальному заголовку
+     * @param entry запись, прочитанная ZipInputStream или ZipFile
+     * @return да, если запись служебная
+     */
+    static boolean isServiceEntry(ZipEntry entry) {
+        return entry.getName().startsWith(SERVICE_PREFIX) && ZipFormat.hasServiceExtra(entry.getExtra());
+    }
+
+    /**
+     * Сведения о файле в манифесте
+     */
+    static final class Entry {
+        final long size;
+        final long time;
+        final long crc;
+
+        Entry(long size, long time, long crc) {
+            this.size = size;
+            this.time = time;
+            this.crc = crc;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ArchivingException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+
+/**
+ * Объединение и фильтрация архивов без повторного сжатия: выбранные записи копируются из исходных архивов
+ * сжатыми данными с прежними контрольными суммами и размерами (через FileChannel.transferTo, если результат
+ * пишется в файл), затем записывается новый центральный каталог. Сначала по центральным каталогам и таблицам
+ * блоков solid выбирается запись для каждого имени, поэтому при правиле {@link DuplicatePolicy#FAIL} ничего
+ * не записывается. Блоки solid копируются целиком и получают новые номера; блок, из которого выбраны не все
+ * файлы, распаковывается и сжимается заново только с выбранными файлами. Служебные записи, кроме блоков,
+ * не переносятся: манифест инкрементальной архивации не соответствует новому архиву
+ */
+class ArchiveMerger {
+    private final ArchiveOptions options;
+    private final Predicate<String> filter;
+    private final Map<String, Long> selected = new HashMap<>();
+    private final Map<Long, List<ZipRecord>> tables = new HashMap<>();
+
+    /**
+     * @param include имена и шаблоны включаемых записей, пустой список - все записи
+     * @param exclude имена и шаблоны исключаемых записей
+     * @param options параметры: правило для повторяющихся записей, профиль сжатия блоков solid и получатель событий
+     * @throws IllegalArgumentException если шаблон пустой или неверный
+     */
+    ArchiveMerger(Collection<String> include, Collection<String> exclude, ArchiveOptions options) {
+        this.options = options;
+        Predicate<String> included = include.isEmpty() ? name -> true : new EntryMatcher(include);
+        Predicate<String> excluded = exclude.isEmpty() ? name -> false : new EntryMatcher(exclude);
+        this.filter = included.and(excluded.negate());
+    }
+
+    /**
+     * Объединяет архивы в выходной поток
+     * @param archives пути к исходным Zip файлам в порядке объединения
+     * @param outputStream выходной поток
+     * @throws IllegalArgumentException если исходный файл не является Zip файлом или при правиле
+     *                                  {@link DuplicatePolicy#FAIL} найдены повторяющиеся записи
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    void merge(List<Path> archives, OutputStream outputStream) {
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            List<ZipIndex> indexes = new ArrayList<>();
+            for (Path archive : archives) {
+                FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ);
+                channels.add(channel);
+                try {
+                    indexes.add(ZipIndex.read(channel));
+                } catch (IOException exception) {
+                    throw new IllegalArgumentException("Ошибка! Неверный Zip файл: " + archive, exception);
+                }
+            }
+            for (int i = 0; i < indexes.size(); i++)
+                select(indexes.get(i), i);
+            write(indexes, outputStream);
+        } catch (IOException exception) {
+            throw new ArchivingException("Ошибка объединения архивов!", exception);
+        } finally {
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Канал открыт только для чтения
+                }
+            }
+        }
+    }
+
+    /**
+     * Выбирает записи архива согласно фильтру и правилу для повторяющихся записей
+     */
+    private void select(ZipIndex index, int archive) throws IOException {
+        List<ZipRecord> records = index.records();
+        for (int i = 0; i < records.size(); i++) {
+            ZipRecord record = records.get(i);
+            long id = id(archive, i);
+            if (SolidBlock.isBlock(record)) {
+                List<ZipRecord> members;
+                try (DataInputStream in = new DataInputStream(index.open(record))) {
+                    members = SolidBlock.readTable(in);
+                }
+                tables.put(id, members);
+                for (ZipRecord member : members)
+                    if (filter.test(member.name))
+                        select(member.name, id, false);
+            } else if (!ArchiveManifest.isServiceEntry(record) && filter.test(record.name)) {
+                select(record.name, id, record.isDirectory());
+            }
+        }
+    }
+
+    private void select(String name, long id, boolean directory) {
+        Long previous = selected.putIfAbsent(name, id);
+        if (previous == null || directory)
+            return;
+        switch (options.getDuplicatePolicy()) {
+            case LAST:
+                selected.put(name, id);
+                break;
+            case FAIL:
+                throw new IllegalArgumentException("Ошибка! Запись есть в нескольких архивах: " + name);
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Записывает выбранные записи в порядке архивов и их центральных каталогов
+     */
+    private void write(List<ZipIndex> indexes, OutputStream outputStream) throws IOException {
+        ArchiveListener listener = options.getListener();
+        try (ZipWriter writer = new ZipWriter(outputStream);
+             EntryWriter entries = new EntryWriter(writer)) {
+            int blocks = 0;
+            for (int archive = 0; archive < indexes.size(); archive++) {
+                ZipIndex index = indexes.get(archive);
+                List<ZipRecord> records = index.records();
+                for (int i = 0; i < records.size(); i++) {
+                    ZipRecord record = records.get(i);
+                    long id = id(archive, i);
+                    if (SolidBlock.isBlock(record)) {
+                        List<ZipRecord> members = new ArrayList<>();
+                        for (ZipRecord member : tables.get(id))
+                            if (Long.valueOf(id).equals(selected.get(member.name)))
+                                members.add(member);
+                        if (members.isEmpty())
+                            continue;
+                        String name = SolidBlock.name(blocks++);
+                        if (members.size() == tables.get(id).size())
+                            copyBlock(writer, index, record, name, members, listener);
+                        else
+                            repackBlock(entries, index, record, name, tables.get(id), members, listener);
+                    } else if (Long.valueOf(id).equals(selected.get(record.name))) {
+                        EntryStatistics statistics = new EntryStatistics(record.name, record.isDirectory());
+                        long start = System.nanoTime();
+                        ZipRecord copy = writer.copyRaw(record, index.channel(), index.dataOffset(record));
+                        statistics.since(ArchivePhase.WRITE, start);
+                        statistics.size = copy.size;
+                        statistics.compressedSize = copy.compressedSize;
+                        listener.entryCompleted(statistics);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return номер записи среди записей всех архивов
+     */
+    private static long id(int archive, int ordinal) {
+        return (long) archive << 32 | ordinal;
+    }
+
+    private static void copyBlock(ZipWriter writer, ZipIndex index, ZipRecord record, String name,
+                                  List<ZipRecord> members, ArchiveListener listener) throws IOException {
+        long start = System.nanoTime();
+        ZipRecord copy = writer.copyRaw(record, name, index.channel(), index.dataOffset(record));
+        long nanos = System.nanoTime() - start;
+        double ratio = SolidBlock.ratio(copy.compressedSize, copy.size);
+        for (ZipRecord member : members) {
+            EntryStatistics statistics = new EntryStatistics(member.name, false);
+            statistics.size = member.size;
+            statistics.compressedSize = Math.round(member.size * ratio);
+            statistics.add(ArchivePhase.WRITE, copy.size == 0 ? 0 : (long) (nanos * ((double) member.size / copy.size)));
+            listener.entryCompleted(statistics);
+        }
+    }
+
+    /**
+     * Распаковывает блок и сжимает заново только выбранные файлы
+     */
+    private void repackBlock(EntryWriter entries, ZipIndex index, ZipRecord record, String name,
+                             List<ZipRecord> table, List<ZipRecord> members, ArchiveListener listener) throws IOException {
+        long start = System.nanoTime();
+        Set<ZipRecord> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        kept.addAll(members);
+        ByteArrayOutputStream data = new ByteArrayOutputStream((int) Math.min(record.size, SolidZipper.BLOCK_SIZE * 2L));
+        try (DataInputStream in = new DataInputStream(index.open(record))) {
+            SolidBlock.readTable(in);
+            byte[] buffer = new byte[SolidZipper.MEMBER_LIMIT];
+            for (ZipRecord member : table) {
+                long remaining = member.size;
+                while (remaining > 0) {
+                    int length = (int) Math.min(buffer.length, remaining);
+                    in.readFully(buffer, 0, length);
+                    if (kept.contains(member))
+                        data.write(buffer, 0, length);
+                    remaining -= length;
+                }
+            }
+        }
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(data.size() + 64 * members.size());
+        SolidBlock.writeTable(members, raw);
+        data.writeTo(raw);
+
+        ZipRecord block = new ZipRecord(name);
+        block.service = true;
+        block.dosTime = record.dosTime;
+        EntryStatistics blockStatistics = new EntryStatistics(name, false);
+        blockStatistics.since(ArchivePhase.INFLATE, start);
+        entries.writeDeflated(new ByteArrayInputStream(raw.toByteArray()), block,
+                CompressionPolicy.Decision.deflate(options.getProfile().level(), Deflater.DEFAULT_STRATEGY), blockStatistics);
+        double ratio = SolidBlock.ratio(block.compressedSize, block.size);
+        for (ZipRecord member : members) {
+            EntryStatistics statistics = new EntryStatistics(member.name, false);
+            double share = block.size == 0 ? 0 : (double) member.size / block.size;
+            for (ArchivePhase phase : ArchivePhase.values())
+                statistics.add(phase, (long) (blockStatistics.getNanos(phase) * share));
+            statistics.size = member.size;
+            statistics.compressedSize = Math.round(member.size * ratio);
+            listener.entryCompleted(statistics);
+        }
+    }
+}
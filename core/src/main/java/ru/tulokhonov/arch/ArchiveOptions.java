@@ -0,0 +1,201 @@
+package ru.tulokhonov.arch;
+
+import java.nio.file.Path;
+
+/**
+ * Параметры архивации и извлечения
+ */
+public class ArchiveOptions {
+    private int threads = 1;
+    private long memoryBudget = 64L * 1024 * 1024;
+    private CompressionPolicy.Profile profile = CompressionPolicy.Profile.BALANCED;
+    private int walkerThreads = 1;
+    private boolean sorted;
+    private boolean solid;
+    private Path baseArchive;
+    private Path workingDirectory;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.FIRST;
+    private ArchiveListener listener = ArchiveListener.NONE;
+
+    /**
+     * @return количество потоков сжатия. Значение 1 означает последовательную архивацию
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Задает количество потоков сжатия
+     * @param threads количество потоков, 0 - по числу доступных процессоров
+     * @return текущие параметры
+     * @throws IllegalArgumentException если количество потоков отрицательное
+     */
+    public ArchiveOptions setThreads(int threads) {
+        if (threads < 0)
+            throw new IllegalArgumentException("Ошибка! Неверное количество потоков: " + threads);
+        this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+        return this;
+    }
+
+    /**
+     * @return ограничение памяти в байтах для данных, находящихся в обработке при параллельной архивации
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Задает ограничение памяти для данных, находящихся в обработке при параллельной архивации
+     * @param memoryBudget ограничение в байтах
+     * @return текущие параметры
+     * @throws IllegalArgumentException если ограничение не положительное
+     */
+    public ArchiveOptions setMemoryBudget(long memoryBudget) {
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("Ошибка! Неверное ограничение памяти: " + memoryBudget);
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * @return профиль сжатия
+     */
+    public CompressionPolicy.Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Задает профиль сжатия: скорость, баланс или степень сжатия
+     * @param profile профиль сжатия
+     * @return текущие параметры
+     */
+    public ArchiveOptions setProfile(CompressionPolicy.Profile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /**
+     * @return количество потоков обхода директорий. Значение 1 означает последовательный обход
+     */
+    public int getWalkerThreads() {
+        return walkerThreads;
+    }
+
+    /**
+     * Задает количество потоков обхода директорий
+     * @param walkerThreads количество потоков, 0 - по числу доступных процессоров
+     * @return текущие параметры
+     * @throws IllegalArgumentException если количество потоков отрицательное
+     */
+    public ArchiveOptions setWalkerThreads(int walkerThreads) {
+        if (walkerThreads < 0)
+            throw new IllegalArgumentException("Ошибка! Неверное количество потоков: " + walkerThreads);
+        this.walkerThreads = walkerThreads == 0 ? Runtime.getRuntime().availableProcessors() : walkerThreads;
+        return this;
+    }
+
+    /**
+     * @return да, если содержимое директорий при параллельном обходе упорядочивается по имени
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Задает детерминированный порядок файлов при параллельном обходе директорий
+     * @param sorted да, если содержимое директорий упорядочивается по имени
+     * @return текущие параметры
+     */
+    public ArchiveOptions setSorted(boolean sorted) {
+        this.sorted = sorted;
+        return this;
+    }
+
+    /**
+     * @return да, если небольшие файлы объединяются в блоки, сжимаемые одним потоком (режим solid)
+     */
+    public boolean isSolid() {
+        return solid;
+    }
+
+    /**
+     * Включает режим solid: файлы меньше 64 КБ объединяются в блоки, сжимаемые одним потоком DEFLATE.
+     * Архив извлекается этим архиватором, другие программы видят вместо таких файлов служебные записи
+     * {@code .archiver/solid/}
+     * @param solid да, если нужно объединять небольшие файлы в блоки
+     * @return текущие параметры
+     */
+    public ArchiveOptions setSolid(boolean solid) {
+        this.solid = solid;
+        return this;
+    }
+
+    /**
+     * @return путь к предыдущему архиву для инкрементальной архивации или null
+     */
+    public Path getBaseArchive() {
+        return baseArchive;
+    }
+
+    /**
+     * Включает инкрементальную архивацию: неизмененные файлы переносятся из предыдущего архива без повторного сжатия
+     * @param baseArchive путь к предыдущему архиву
+     * @return текущие параметры
+     */
+    public ArchiveOptions setBaseArchive(Path baseArchive) {
+        this.baseArchive = baseArchive;
+        return this;
+    }
+
+    /**
+     * @return папка, относительно которой разрешаются пути к файлам, или null для текущей папки процесса
+     */
+    public Path getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * Задает папку, относительно которой разрешаются относительные пути к файлам для архивации. Имена записей
+     * строятся относительно нее, поэтому архив совпадает с архивом, созданным из этой папки как из текущей
+     * @param workingDirectory абсолютный путь к папке или null для текущей папки процесса
+     * @return текущие параметры
+     */
+    public ArchiveOptions setWorkingDirectory(Path workingDirectory) {
+        this.workingDirectory = workingDirectory;
+        return this;
+    }
+
+    /**
+     * @return правило выбора одноименных записей при объединении архивов
+     */
+    public DuplicatePolicy getDuplicatePolicy() {
+        return duplicatePolicy;
+    }
+
+    /**
+     * Задает правило выбора одноименных записей при объединении архивов
+     * @param duplicatePolicy правило
+     * @return текущие параметры
+     */
+    public ArchiveOptions setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+        return this;
+    }
+
+    /**
+     * @return получатель событий архивации и извлечения
+     */
+    public ArchiveListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Задает получателя событий архивации и извлечения, например {@link ArchiveStatistics}
+     * @param listener получатель событий
+     * @return текущие параметры
+     */
+    public ArchiveOptions setListener(ArchiveListener listener) {
+        this.listener = listener == null ? ArchiveListener.NONE : listener;
+        return this;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.tulokhonov.arch;
+
+/**
+ * Этапы архивации и извлечения, для которых измеряется затраченное время
+ */
+public enum ArchivePhase {
+    /** Перечисление файлов и папок для архивации */
+    ENUMERATE,
+    /** Чтение исходных файлов или сжатых данных архива */
+    READ,
+    /** Сжатие */
+    DEFLATE,
+    /** Распаковка */
+    INFLATE,
+    /** Запись архива или извлеченных файлов */
+    WRITE
+}
@@ -0,0 +1,182 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ru.tulokhonov.arch.ServerProtocol.*;
+
+/**
+ * Сервер архиватора: выполняет команды клиентов ({@link ArchiveClient}) в одной JVM, поэтому повторные вызовы
+ * не тратят время на запуск JVM и прогрев JIT, а пулы буферов общие для всех команд. Принимает соединения
+ * только на loopback-адресе, каждое соединение обслуживается в отдельном потоке (виртуальном, если JVM
+ * их поддерживает). Пути в командах разрешаются относительно рабочей папки клиента.
+ * При запуске сервер создает случайный ключ доступа и записывает его в файл {@link ServerProtocol#tokenFile(int)}
+ * с правами только для владельца. Команды без этого ключа не выполняются, поэтому другие локальные пользователи
+ * не могут выполнять команды от имени пользователя, запустившего сервер. При закрытии файл ключа удаляется
+ */
+class ArchiveServer implements Closeable {
+    static final int DEFAULT_PORT = 7891;
+
+    private static final int TOKEN_SIZE = 32;
+
+    private final ServerSocket socket;
+    private final byte[] token;
+    private final Path tokenFile;
+    private final ExecutorService pool = newExecutor();
+
+    /**
+     * @param port порт, 0 - любой свободный порт
+     * @throws IOException если порт занят или файл ключа доступа не удалось создать
+     */
+    ArchiveServer(int port) throws IOException {
+        this.socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        byte[] random = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder(2 * TOKEN_SIZE);
+        for (byte b : random)
+            hex.append(String.format("%02x", b));
+        this.token = hex.toString().getBytes(StandardCharsets.US_ASCII);
+        this.tokenFile = ServerProtocol.tokenFile(socket.getLocalPort());
+        try {
+            writeToken(tokenFile, token);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return порт, на котором сервер принимает соединения
+     */
+    int port() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Принимает соединения до закрытия сервера
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void run() throws IOException {
+        while (!socket.isClosed()) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (SocketException e) {
+                if (socket.isClosed())
+                    return;
+                throw e;
+            }
+            pool.execute(() -> serve(connection));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        pool.shutdownNow();
+        Files.deleteIfExists(tokenFile);
+    }
+
+    private void serve(Socket connection) {
+        try (Socket ignored = connection) {
+            connection.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), FRAME_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), FRAME_SIZE));
+            if (in.readInt() != MAGIC)
+                return;
+            if (!MessageDigest.isEqual(token, in.readUTF().getBytes(StandardCharsets.US_ASCII))) {
+                PrintStream stderr = new PrintStream(new FrameOutputStream(out, STDERR), true);
+                stderr.println("Ошибка! Неверный ключ доступа к серверу архиватора");
+                synchronized (out) {
+                    out.writeByte(END);
+                    out.writeInt(1);
+                    out.flush();
+                }
+                return;
+            }
+            Path directory = Paths.get(in.readUTF());
+            int count = in.readInt();
+            if (count < 0 || count > FRAME_SIZE)
+                return;
+            String[] args = new String[count];
+            for (int i = 0; i < count; i++)
+                args[i] = in.readUTF();
+            boolean hasInput = in.readBoolean();
+
+            InputStream stdin = hasInput ? new FrameInputStream(in, STDIN) : new ByteArrayInputStream(new byte[0]);
+            OutputStream stdout = new BufferedOutputStream(new FrameOutputStream(out, STDOUT), FRAME_SIZE);
+            PrintStream stderr = new PrintStream(new FrameOutputStream(out, STDERR), true);
+            int code = execute(args, directory, stdin, hasInput, stdout, stderr);
+            stderr.flush();
+            synchronized (out) {
+                out.writeByte(END);
+                out.writeInt(code);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // Клиент отключился
+        }
+    }
+
+    /**
+     * Выполняет команду так же, как {@link App#main(String[])}: ошибка выводится в stderr и дает код возврата 1
+     */
+    private static int execute(String[] args, Path directory, InputStream in, boolean hasInput, OutputStream out, PrintStream err) {
+        try {
+            if (!directory.isAbsolute())
+                throw new IllegalArgumentException("Ошибка! Рабочая папка клиента должна быть абсолютным путем: " + directory);
+            Options options = Options.parse(args);
+            if (options.server() >= 0 || options.connect() >= 0)
+                throw new IllegalArgumentException("Ошибка! Параметры --server и --connect не передаются серверу");
+            options.archiveOptions().setWorkingDirectory(directory);
+            App.run(options, directory, in, hasInput, out, err);
+            out.flush();
+            return 0;
+        } catch (Exception e) {
+            err.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Записывает ключ доступа в новый файл с правами только для владельца. Файл, оставшийся от прежнего запуска
+     * на том же порту, заменяется. Права задаются при создании, поэтому ключ не бывает доступен другим пользователям
+     */
+    private static void writeToken(Path file, byte[] token) throws IOException {
+        Files.deleteIfExists(file);
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Файловая система без прав POSIX: доступ ограничивается после создания
+            File created = Files.createFile(file).toFile();
+            if (!created.setReadable(false, false) || !created.setReadable(true, true)
+                    || !created.setWritable(false, false) || !created.setWritable(true, true))
+                throw new IOException("Ошибка! Не удалось ограничить доступ к файлу ключа " + file);
+        }
+        Files.write(file, token);
+    }
+
+    /**
+     * Создает исполнитель с виртуальным потоком на каждое соединение, если JVM их поддерживает (Java 21+),
+     * иначе пул потоков
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(ParallelZipper.daemonThreads("archiver-server"));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.tulokhonov.arch;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сводная статистика архивации или извлечения. Накапливает события {@link ArchiveListener} и может
+ * читаться во время работы, например для вывода прогресса. Потокобезопасна
+ */
+public class ArchiveStatistics implements ArchiveListener {
+    private final long startNanos = System.nanoTime();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder size = new LongAdder();
+    private final LongAdder compressedSize = new LongAdder();
+    private final LongAdder[] nanos = new LongAdder[ArchivePhase.values().length];
+    private volatile long finishNanos;
+
+    public ArchiveStatistics() {
+        for (int i = 0; i < nanos.length; i++)
+            nanos[i] = new LongAdder();
+    }
+
+    @Override
+    public void entryEnumerated(long nanos) {
+        this.nanos[ArchivePhase.ENUMERATE.ordinal()].add(nanos);
+    }
+
+    @Override
+    public void entryCompleted(EntryStatistics entry) {
+        entries.increment();
+        size.add(entry.getSize());
+        compressedSize.add(entry.getCompressedSize());
+        for (ArchivePhase phase : ArchivePhase.values())
+            nanos[phase.ordinal()].add(entry.getNanos(phase));
+    }
+
+    /**
+     * Фиксирует время окончания работы. До вызова время считается до текущего момента
+     */
+    public void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    /**
+     * @return количество обработанных записей, включая папки
+     */
+    public long getEntries() {
+        return entries.sum();
+    }
+
+    /**
+     * @return размер несжатых данных в байтах
+     */
+    public long getSize() {
+        return size.sum();
+    }
+
+    /**
+     * @return размер сжатых данных в байтах
+     */
+    public long getCompressedSize() {
+        return compressedSize.sum();
+    }
+
+    /**
+     * @return степень сжатия: отношение размера сжатых данных к размеру несжатых
+     */
+    public double getRatio() {
+        long total = getSize();
+        return total == 0 ? 1 : (double) getCompressedSize() / total;
+    }
+
+    /**
+     * @param phase этап
+     * @return суммарное время этапа в наносекундах по всем потокам
+     */
+    public long getNanos(ArchivePhase phase) {
+        return nanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @return время работы в наносекундах
+     */
+    public long getElapsedNanos() {
+        long finish = finishNanos;
+        return (finish == 0 ? System.nanoTime() : finish) - startNanos;
+    }
+
+    /**
+     * @return количество записей в секунду
+     */
+    public double getEntriesPerSecond() {
+        return perSecond(getEntries());
+    }
+
+    /**
+     * @return скорость обработки несжатых данных в байтах в секунду
+     */
+    public double getBytesPerSecond() {
+        return perSecond(getSize());
+    }
+
+    /**
+     * Формирует сводку в формате JSON одной строкой
+     * @return сводка в формате JSON
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"entries\":").append(getEntries())
+                .append(",\"size\":").append(getSize())
+                .append(",\"compressedSize\":").append(getCompressedSize())
+                .append(",\"ratio\":").append(format(getRatio()))
+                .append(",\"elapsedMillis\":").append(getElapsedNanos() / 1_000_000)
+                .append(",\"entriesPerSecond\":").append(format(getEntriesPerSecond()))
+                .append(",\"bytesPerSecond\":").append(format(getBytesPerSecond()))
+                .append(",\"phaseMillis\":{");
+        for (ArchivePhase phase : ArchivePhase.values()) {
+            if (phase.ordinal() > 0)
+                json.append(',');
+            json.append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\":").append(getNanos(phase) / 1_000_000);
+        }
+        return json.append("}}").toString();
+    }
+
+    private double perSecond(long value) {
+        long elapsed = getElapsedNanos();
+        return elapsed <= 0 ? 0 : value * 1e9 / elapsed;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,299 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Проверка целостности архива без записи на диск: данные каждой записи распаковываются в буферы из пула,
+ * размер и CRC32 сравниваются с центральным каталогом (или с дескриптором данных при чтении из потока),
+ * файлы блоков режима solid проверяются по таблице блока. Если задана исходная папка, записи сравниваются
+ * с ее файлами по размеру и CRC32, а файлы папок архива, которых нет в архиве, считаются лишними.
+ * Zip файл с произвольным доступом проверяется параллельно по записям, поток - последовательно
+ */
+class ArchiveVerifier {
+    private final ArchiveOptions options;
+    private final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final VerifyReport report = new VerifyReport();
+    private final Set<String> names = ConcurrentHashMap.newKeySet();
+    private Path source;
+
+    ArchiveVerifier(ArchiveOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Проверяет Zip файл с произвольным доступом
+     * @param channel канал Zip файла. Канал не закрывается
+     * @param source исходная папка для сравнения или null
+     * @return отчет проверки
+     * @throws IllegalArgumentException если центральный каталог не читается или архив пуст
+     * @throws ExtractionException при ошибке чтения исходной папки
+     */
+    VerifyReport verify(FileChannel channel, Path source) {
+        ZipIndex index;
+        try {
+            index = ZipIndex.read(channel);
+        } catch (IOException exception) {
+            throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip", exception);
+        }
+        if (index.records().isEmpty())
+            throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip");
+
+        this.source = source == null ? null : source.toAbsolutePath().normalize();
+        ExecutorService pool = Executors.newFixedThreadPool(options.getThreads(), ParallelZipper.daemonThreads("archiver-verify"));
+        try {
+            List<ZipRecord> records = index.records();
+            List<Future<?>> futures = new ArrayList<>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                long ordinal = i;
+                ZipRecord record = records.get(i);
+                futures.add(pool.submit(() -> {
+                    verify(index, record, ordinal);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                await(future);
+            checkExtraSources(records.size());
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка проверки архива!", exception);
+        } finally {
+            pool.shutdownNow();
+            Inflater inflater;
+            while ((inflater = inflaters.poll()) != null)
+                inflater.end();
+        }
+        return report;
+    }
+
+    /**
+     * Проверяет Zip файл из потока. Поток после поврежденной записи не читается, поэтому проверка
+     * останавливается на первой ошибке данных
+     * @param is входной поток
+     * @param source исходная папка для сравнения или null
+     * @return отчет проверки
+     * @throws IllegalArgumentException если поток пуст или не является Zip файлом
+     * @throws ExtractionException при ошибке чтения исходной папки
+     */
+    VerifyReport verify(InputStream is, Path source) {
+        this.source = source == null ? null : source.toAbsolutePath().normalize();
+        long ordinal = 0;
+        String name = null;
+        try (ZipInputStream zis = new ZipInputStream(is)) {
+            ZipEntry entry = zis.getNextEntry();
+            if (entry == null)
+                throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip");
+            for (; entry != null; entry = zis.getNextEntry(), ordinal++) {
+                name = entry.getName();
+                EntryStatistics statistics = new EntryStatistics(name, entry.isDirectory());
+                CRC32 crc = new CRC32();
+                long size = read(zis, SolidBlock.isBlock(entry), ordinal, crc, statistics);
+                // Для записей с дескриптором данных размер и CRC32 известны только после чтения данных
+                check(name, ordinal, size, crc.getValue(), entry.getSize(), entry.getCrc(), entry.isDirectory(),
+                        ArchiveManifest.isServiceEntry(entry));
+                statistics.size = size;
+                statistics.compressedSize = Math.max(0, entry.getCompressedSize());
+                options.getListener().entryCompleted(statistics);
+                name = null;
+            }
+            checkExtraSources(ordinal);
+        } catch (ZipException | EOFException exception) {
+            report.fail(ordinal, name == null ? "" : name, VerifyReport.Problem.CORRUPT, exception.getMessage());
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка проверки архива!", exception);
+        }
+        return report;
+    }
+
+    /**
+     * Проверяет одну запись Zip файла. Ошибки чтения данных записи попадают в отчет
+     */
+    private void verify(ZipIndex index, ZipRecord record, long ordinal) throws IOException {
+        EntryStatistics statistics = new EntryStatistics(record.name, record.isDirectory());
+        Inflater inflater = null;
+        try {
+            long start = System.nanoTime();
+            InputStream data = new ChannelInputStream(index.channel(), index.dataOffset(record), record.compressedSize);
+            statistics.since(ArchivePhase.READ, start);
+            if (record.method == DEFLATED) {
+                inflater = inflaters.poll();
+                if (inflater == null)
+                    inflater = new Inflater(true);
+                data = new InflaterInputStream(data, inflater, (int) Math.max(512, Math.min(record.compressedSize, BufferPool.DEFAULT_BUFFER_SIZE)));
+            } else if (record.method != STORED) {
+                report.fail(ordinal, record.name, VerifyReport.Problem.CORRUPT, "Неподдерживаемый метод сжатия: " + record.method);
+                return;
+            }
+            CRC32 crc = new CRC32();
+            long size = read(data, SolidBlock.isBlock(record), ordinal, crc, statistics);
+            check(record.name, ordinal, size, crc.getValue(), record.size, record.crc, record.isDirectory(),
+                    ArchiveManifest.isServiceEntry(record));
+            statistics.size = size;
+            statistics.compressedSize = record.compressedSize;
+            options.getListener().entryCompleted(statistics);
+        } catch (ZipException | EOFException exception) {
+            report.fail(ordinal, record.name, VerifyReport.Problem.CORRUPT, exception.getMessage());
+        } finally {
+            if (inflater != null) {
+                inflater.reset();
+                inflaters.offer(inflater);
+            }
+        }
+    }
+
+    /**
+     * Читает данные записи, считая их CRC32. Файлы блока solid проверяются по таблице блока
+     * @return размер данных
+     */
+    private long read(InputStream data, boolean block, long ordinal, CRC32 crc, EntryStatistics statistics) throws IOException {
+        ByteBuffer buffer = BufferPool.heap().acquire();
+        try {
+            CountingInputStream in = new CountingInputStream(new CheckedInputStream(data, crc));
+            long start = System.nanoTime();
+            if (block)
+                readBlock(new DataInputStream(in), ordinal, buffer.array());
+            while (in.read(buffer.array()) >= 0)
+                ;
+            statistics.since(ArchivePhase.INFLATE, start);
+            return in.count;
+        } finally {
+            BufferPool.heap().release(buffer);
+        }
+    }
+
+    private void readBlock(DataInputStream in, long ordinal, byte[] buffer) throws IOException {
+        for (ZipRecord member : SolidBlock.readTable(in)) {
+            CRC32 crc = new CRC32();
+            long remaining = member.size;
+            while (remaining > 0) {
+                int length = (int) Math.min(buffer.length, remaining);
+                in.readFully(buffer, 0, length);
+                crc.update(buffer, 0, length);
+                remaining -= length;
+            }
+            check(member.name, ordinal, member.size, crc.getValue(), member.size, member.crc, false, false);
+        }
+    }
+
+    /**
+     * Сравнивает прочитанные данные с ожидаемыми, а при заданной исходной папке - с ее файлом
+     */
+    private void check(String name, long ordinal, long size, long crc, long expectedSize, long expectedCrc,
+                       boolean directory, boolean service) throws IOException {
+        if (service) {
+            if (expectedSize >= 0 && size != expectedSize)
+                report.fail(ordinal, name, VerifyReport.Problem.SIZE, "Размер " + size + ", ожидается " + expectedSize);
+            else if (expectedCrc >= 0 && crc != expectedCrc)
+                report.fail(ordinal, name, VerifyReport.Problem.CRC, "Неверная контрольная сумма");
+            return;
+        }
+        names.add(name);
+        if (expectedSize >= 0 && size != expectedSize)
+            report.fail(ordinal, name, VerifyReport.Problem.SIZE, "Размер " + size + ", ожидается " + expectedSize);
+        else if (expectedCrc >= 0 && crc != expectedCrc)
+            report.fail(ordinal, name, VerifyReport.Problem.CRC, "Неверная контрольная сумма");
+        else
+            report.entryVerified(size);
+        if (source != null)
+            compareSource(name, ordinal, size, crc, directory);
+    }
+
+    private void compareSource(String name, long ordinal, long size, long crc, boolean directory) throws IOException {
+        Path path = source.resolve(name).normalize();
+        if (!path.startsWith(source) || path.equals(source)) {
+            report.fail(ordinal, name, VerifyReport.Problem.CORRUPT, "Запись вне исходной папки");
+            return;
+        }
+        if (directory ? !Files.isDirectory(path) : !Files.isRegularFile(path)) {
+            report.fail(ordinal, name, VerifyReport.Problem.MISSING_SOURCE, "Нет в исходной папке");
+            return;
+        }
+        if (directory)
+            return;
+        long sourceSize = Files.size(path);
+        if (sourceSize != size) {
+            report.fail(ordinal, name, VerifyReport.Problem.SOURCE_SIZE, "Размер " + size + ", в исходной папке " + sourceSize);
+            return;
+        }
+        CRC32 sourceCrc = new CRC32();
+        Utils.checksum(path.toFile(), sourceCrc);
+        if (sourceCrc.getValue() != crc)
+            report.fail(ordinal, name, VerifyReport.Problem.SOURCE_CRC, "Содержимое отличается от исходной папки");
+    }
+
+    /**
+     * Ищет в исходной папке файлы и папки, которых нет в архиве. Проверяются только папки, записанные в архиве
+     */
+    private void checkExtraSources(long ordinal) throws IOException {
+        if (source == null)
+            return;
+        for (String name : names) {
+            if (!name.endsWith("/"))
+                continue;
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(source.resolve(name))) {
+                for (Path child : children) {
+                    String childName = name + child.getFileName() + (Files.isDirectory(child) ? "/" : "");
+                    if (!names.contains(childName))
+                        report.fail(ordinal, childName, VerifyReport.Problem.EXTRA_SOURCE, "Нет в архиве");
+                }
+            } catch (NoSuchFileException | NotDirectoryException ignored) {
+                // Отсутствие папки уже в отчете
+            }
+        }
+    }
+
+    /**
+     * Поток, считающий прочитанные байты
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Проверка прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ArchivingException;
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Архиватор для встраивания в приложение, например в сервис, который собирает Zip файлы по запросам.
+ * В отличие от статических методов {@link Utils} экземпляр хранит пулы Deflater, Inflater и буферов,
+ * которые переиспользуются между вызовами и потоками, поэтому в установившемся режиме вызов не создает новых
+ * нативных объектов сжатия и буферов данных. Количество хранимых экземпляров каждого вида ограничено размером пула,
+ * при большей конкуренции недостающие создаются и освобождаются после вызова.
+ * <p>
+ * Потокобезопасен: один экземпляр может одновременно выполнять вызовы из разных потоков. Каждый вызов выполняется
+ * в потоке вызывающего, {@link ArchiveOptions#getThreads()} не используется. Параметры и получатель событий
+ * общие для всех вызовов: параметры не должны меняться после создания архиватора, а получатель событий должен
+ * быть потокобезопасным. После {@link #close()} пулы освобождаются, архиватор нельзя использовать.
+ * Режимы solid и инкрементальной архивации не поддерживаются
+ */
+public class Archiver implements Closeable {
+    /** Размер пулов по умолчанию: по четыре одновременных вызова на процессор */
+    public static final int DEFAULT_POOL_SIZE = 4 * Runtime.getRuntime().availableProcessors();
+
+    private static final int BUFFERS_PER_CALL = 5;
+
+    private final ArchiveOptions options;
+    private final CodecPool codecs;
+
+    /**
+     * @param options параметры: профиль сжатия, папка для имен записей и получатель событий
+     * @throws IllegalArgumentException если включен режим solid или инкрементальная архивация
+     */
+    public Archiver(ArchiveOptions options) {
+        this(options, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param options параметры: профиль сжатия, папка для имен записей и получатель событий
+     * @param poolSize количество одновременных вызовов, для которых в пулах хранятся буферы, экземпляры Inflater
+     *                 и экземпляры Deflater каждого уровня и стратегии сжатия
+     * @throws IllegalArgumentException если размер пула отрицательный, включен режим solid или инкрементальная архивация
+     */
+    public Archiver(ArchiveOptions options, int poolSize) {
+        if (poolSize < 0)
+            throw new IllegalArgumentException("Ошибка! Неверный размер пула: " + poolSize);
+        if (options.isSolid() || options.getBaseArchive() != null)
+            throw new IllegalArgumentException("Ошибка! Архиватор не поддерживает режим solid и инкрементальную архивацию");
+        this.options = options;
+        // Архивация берет пять буферов: для записи архива, чтения и сжатия файла, образца и пробного сжатия
+        this.codecs = new CodecPool(poolSize, new BufferPool(BufferPool.DEFAULT_BUFFER_SIZE, false, BUFFERS_PER_CALL * poolSize));
+    }
+
+    /**
+     * Архивирует файлы и папки в выходной поток
+     * @param files список файлов и папок для архивации
+     * @param outputStream выходной поток. Поток не закрывается
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public void zip(List<File> files, OutputStream outputStream) {
+        OutputStream target = new UnclosedOutputStream(outputStream);
+        WritableByteChannel channel = outputStream instanceof FileOutputStream
+                ? ((FileOutputStream) outputStream).getChannel()
+                : Channels.newChannel(target);
+        zip(files, target, channel);
+    }
+
+    /**
+     * Архивирует файлы и папки в канал. Записи без сжатия копируются в канал через FileChannel.transferTo
+     * @param files список файлов и папок для архивации
+     * @param channel канал. Канал не закрывается
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public void zip(List<File> files, WritableByteChannel channel) {
+        zip(files, new UnclosedOutputStream(Channels.newOutputStream(channel)), channel);
+    }
+
+    /**
+     * Архивирует файлы и папки в память
+     * @param files список файлов и папок для архивации
+     * @return буфер с Zip файлом от позиции до границы. Буфер использует массив, в который писался архив, без копирования
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public ByteBuffer zip(List<File> files) {
+        ExposedByteArrayOutputStream bytes = new ExposedByteArrayOutputStream();
+        zip(files, bytes);
+        return bytes.toByteBuffer();
+    }
+
+    /**
+     * Извлекает данные Zip файла в указанный путь
+     * @param archive путь к Zip файлу
+     * @param target путь для извлечения
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public void unZip(Path archive, Path target) {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            new ParallelUnzipper(options(), codecs).unZip(channel, target);
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка извлечения данных!", exception);
+        }
+    }
+
+    /**
+     * Извлекает данные Zip файла из входного потока в указанный путь. Если поток читает обычный файл,
+     * записи извлекаются по центральному каталогу с экземплярами Inflater из пула, иначе поток читается
+     * последовательно через ZipInputStream со своим экземпляром Inflater
+     * @param is входной поток. Поток не закрывается
+     * @param target путь для извлечения
+     * @throws IllegalArgumentException если контент входного потока не является Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public void unZip(InputStream is, Path target) {
+        if (is instanceof FileInputStream && Utils.isSeekable(((FileInputStream) is).getChannel())) {
+            new ParallelUnzipper(options(), codecs).unZip(((FileInputStream) is).getChannel(), target);
+            return;
+        }
+        Utils.unZip(new FilterInputStream(is) {
+            @Override
+            public void close() {
+                // Поток закрывает вызывающий
+            }
+        }, target, options());
+    }
+
+    /**
+     * Освобождает пулы. Экземпляры, которые используются незавершенными вызовами, освобождаются по их завершении
+     */
+    @Override
+    public void close() {
+        codecs.close();
+    }
+
+    private void zip(List<File> files, OutputStream target, WritableByteChannel channel) {
+        ArchiveListener listener = options.getListener();
+        try (ZipWriter writer = new ZipWriter(target, channel, codecs.buffers());
+             EntryWriter entries = new EntryWriter(writer, codecs);
+             CompressionPolicy policy = new CompressionPolicy(options.getProfile(), codecs)) {
+            for (File file : files) {
+                ZipRecord record = new ZipRecord(Utils.getZipEntryName(file.toPath(), options));
+                record.dosTime = javaToDosTime(file.lastModified());
+                if (file.isFile()) {
+                    EntryStatistics statistics = new EntryStatistics(record.name, false);
+                    entries.writeFile(file, record, policy.decide(file), statistics);
+                    statistics.size = record.size;
+                    statistics.compressedSize = record.compressedSize;
+                    listener.entryCompleted(statistics);
+                } else if (file.isDirectory()) {
+                    record.method = STORED;
+                    writer.putLocalHeader(record);
+                    writer.closeEntry(record);
+                    listener.entryCompleted(new EntryStatistics(record.name, true));
+                }
+            }
+        } catch (IOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception);
+        }
+    }
+
+    /**
+     * Параметры извлечения в потоке вызывающего
+     */
+    private ArchiveOptions options() {
+        return new ArchiveOptions()
+                .setThreads(1)
+                .setProfile(options.getProfile())
+                .setWorkingDirectory(options.getWorkingDirectory())
+                .setListener(options.getListener());
+    }
+
+    /**
+     * Выходной поток, который при закрытии только сбрасывает буферы
+     */
+    private static final class UnclosedOutputStream extends FilterOutputStream {
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream, отдающий накопленные данные без копирования
+     */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream() {
+            super(BufferPool.DEFAULT_BUFFER_SIZE);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
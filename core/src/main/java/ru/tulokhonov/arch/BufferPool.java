@@ -0,0 +1,82 @@
+package ru.tulokhonov.arch;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул буферов ввода-вывода одного размера. Буферы переиспользуются между записями и вызовами,
+ * поэтому в установившемся режиме операции ввода-вывода не выделяют память.
+ * Буферы в куче предоставляют массив (array()) для Deflater и Inflater, прямые буферы используются
+ * для чтения и записи через FileChannel без промежуточного копирования. Потокобезопасен
+ */
+class BufferPool {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final BufferPool HEAP = new BufferPool(DEFAULT_BUFFER_SIZE, false, 4 * Runtime.getRuntime().availableProcessors());
+    private static final BufferPool DIRECT = new BufferPool(DEFAULT_BUFFER_SIZE, true, 4 * Runtime.getRuntime().availableProcessors());
+
+    private final int bufferSize;
+    private final boolean direct;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param bufferSize размер буферов в байтах
+     * @param direct да, если буферы выделяются вне кучи
+     * @param maxPooled максимальное количество буферов, хранимых в пуле
+     */
+    BufferPool(int bufferSize, boolean direct, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.direct = direct;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return общий пул буферов в куче размером {@link #DEFAULT_BUFFER_SIZE}
+     */
+    static BufferPool heap() {
+        return HEAP;
+    }
+
+    /**
+     * @return общий пул прямых буферов размером {@link #DEFAULT_BUFFER_SIZE}
+     */
+    static BufferPool direct() {
+        return DIRECT;
+    }
+
+    /**
+     * @return размер буферов пула
+     */
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Берет буфер из пула или выделяет новый, если пул пуст
+     * @return очищенный буфер
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Возвращает буфер в пул. Буферы другого размера и буферы сверх ограничения пула отбрасываются
+     * @param buffer буфер или null
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || buffer.isDirect() != direct)
+            return;
+        if (pooled.incrementAndGet() <= maxPooled)
+            buffers.offer(buffer);
+        else
+            pooled.decrementAndGet();
+    }
+}
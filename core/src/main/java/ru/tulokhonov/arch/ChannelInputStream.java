@@ -0,0 +1,57 @@
+package ru.tulokhonov.arch;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Входной поток для чтения участка файла по абсолютной позиции. Не меняет позицию канала,
+ * поэтому несколько потоков могут одновременно читать разные участки одного канала
+ */
+class ChannelInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+
+    /**
+     * @param channel канал файла
+     * @param position начало участка
+     * @param length длина участка в байтах
+     */
+    ChannelInputStream(FileChannel channel, long position, long length) {
+        this.channel = channel;
+        this.position = position;
+        this.end = position + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (position >= end)
+            return -1;
+        int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+        if (n < 0)
+            throw new EOFException("Неожиданный конец файла");
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+}
@@ -0,0 +1,133 @@
+package ru.tulokhonov.arch;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Пул экземпляров Deflater и Inflater и буферов. Deflater хранятся отдельно для каждого сочетания уровня
+ * и стратегии сжатия, поэтому смена параметров не требует пересоздания нативного состояния. Количество хранимых
+ * экземпляров каждого вида ограничено, лишние освобождаются при возврате. Потокобезопасен
+ */
+class CodecPool implements Closeable {
+    private final int maxPooled;
+    private final BufferPool buffers;
+    private final Map<Integer, Queue<Deflater>> deflaters = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicInteger> pooledDeflaters = new ConcurrentHashMap<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledInflaters = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * @param maxPooled максимальное количество хранимых экземпляров Inflater и Deflater каждого уровня и стратегии
+     * @param buffers пул буферов
+     */
+    CodecPool(int maxPooled, BufferPool buffers) {
+        this.maxPooled = maxPooled;
+        this.buffers = buffers;
+    }
+
+    /**
+     * @return пул буферов
+     */
+    BufferPool buffers() {
+        return buffers;
+    }
+
+    /**
+     * Берет Deflater для сжатия без заголовков zlib или создает новый, если пул пуст
+     * @param level уровень сжатия
+     * @param strategy стратегия сжатия
+     * @return Deflater в начальном состоянии
+     */
+    Deflater deflater(int level, int strategy) {
+        Deflater deflater = deflaters.computeIfAbsent(key(level, strategy), key -> new ConcurrentLinkedQueue<>()).poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            deflater.setStrategy(strategy);
+            return deflater;
+        }
+        pooledDeflaters.get(key(level, strategy)).decrementAndGet();
+        return deflater;
+    }
+
+    /**
+     * Возвращает Deflater в пул
+     * @param deflater Deflater, полученный из {@link #deflater(int, int)} с теми же уровнем и стратегией
+     * @param level уровень сжатия
+     * @param strategy стратегия сжатия
+     */
+    void release(Deflater deflater, int level, int strategy) {
+        deflater.reset();
+        AtomicInteger pooled = pooledDeflaters.computeIfAbsent(key(level, strategy), key -> new AtomicInteger());
+        if (closed || pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflaters.computeIfAbsent(key(level, strategy), key -> new ConcurrentLinkedQueue<>()).offer(deflater);
+        if (closed)
+            end();
+    }
+
+    /**
+     * Берет Inflater для данных без заголовков zlib или создает новый, если пул пуст
+     * @return Inflater в начальном состоянии
+     */
+    Inflater inflater() {
+        Inflater inflater = inflaters.poll();
+        if (inflater == null)
+            return new Inflater(true);
+        pooledInflaters.decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * Возвращает Inflater в пул
+     * @param inflater Inflater, полученный из {@link #inflater()}
+     */
+    void release(Inflater inflater) {
+        inflater.reset();
+        if (closed || pooledInflaters.incrementAndGet() > maxPooled) {
+            pooledInflaters.decrementAndGet();
+            inflater.end();
+            return;
+        }
+        inflaters.offer(inflater);
+        if (closed)
+            end();
+    }
+
+    /**
+     * Освобождает хранимые экземпляры. Экземпляры, возвращенные после закрытия, освобождаются сразу
+     */
+    @Override
+    public void close() {
+        closed = true;
+        end();
+    }
+
+    private void end() {
+        for (Map.Entry<Integer, Queue<Deflater>> entry : deflaters.entrySet()) {
+            Deflater deflater;
+            while ((deflater = entry.getValue().poll()) != null) {
+                pooledDeflaters.get(entry.getKey()).decrementAndGet();
+                deflater.end();
+            }
+        }
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            pooledInflaters.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    private static int key(int level, int strategy) {
+        return level * 16 + strategy;
+    }
+}
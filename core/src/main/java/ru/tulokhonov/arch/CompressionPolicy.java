@@ -0,0 +1,222 @@
+package ru.tulokhonov.arch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Политика сжатия записей. По расширению файла и пробному сжатию начала файла выбирает метод
+ * (DEFLATE или без сжатия), уровень и стратегию сжатия для каждой записи.
+ * Не является потокобезопасной
+ */
+public class CompressionPolicy implements Closeable {
+    /**
+     * Профиль сжатия
+     */
+    public enum Profile {
+        /** Быстрое сжатие: низкий уровень, слабо сжимаемые данные сохраняются без сжатия */
+        SPEED(Deflater.BEST_SPEED, 0.90),
+        /** Баланс скорости и степени сжатия */
+        BALANCED(Deflater.DEFAULT_COMPRESSION, 0.95),
+        /** Максимальное сжатие */
+        RATIO(Deflater.BEST_COMPRESSION, 0.98);
+
+        private final int level;
+        private final double storeRatio;
+
+        Profile(int level, double storeRatio) {
+            this.level = level;
+            this.storeRatio = storeRatio;
+        }
+
+        /**
+         * @return уровень сжатия профиля
+         */
+        int level() {
+            return level;
+        }
+
+        /**
+         * Возвращает профиль по имени без учета регистра
+         * @param name имя профиля
+         * @return профиль
+         * @throws IllegalArgumentException если профиль с таким именем не существует
+         */
+        public static Profile of(String name) {
+            for (Profile profile : values())
+                if (profile.name().equalsIgnoreCase(name))
+                    return profile;
+            throw new IllegalArgumentException("Ошибка! Неизвестный профиль сжатия: " + name);
+        }
+    }
+
+    static final int SAMPLE_SIZE = BufferPool.DEFAULT_BUFFER_SIZE;
+    /** Если пробное сжатие уменьшает данные хуже этого порога, сжатие почти бесполезно */
+    private static final double WEAK_RATIO = 0.8;
+
+    /** Форматы, которые уже сжаты: изображения, аудио, видео, архивы и документы-контейнеры */
+    private static final Set<String> INCOMPRESSIBLE = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+            "mp3", "m4a", "aac", "ogg", "opus", "flac",
+            "mp4", "m4v", "mkv", "mov", "avi", "webm",
+            "zip", "jar", "war", "ear", "apk", "gz", "tgz", "bz2", "xz", "txz", "7z", "rar", "zst", "lz4", "lzma", "cab",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub", "woff", "woff2"));
+
+    /** Текстовые форматы, которые заведомо хорошо сжимаются */
+    private static final Set<String> COMPRESSIBLE = new HashSet<>(Arrays.asList(
+            "txt", "log", "csv", "tsv", "json", "xml", "html", "htm", "css", "js", "ts", "md", "yml", "yaml",
+            "properties", "ini", "sql", "java", "kt", "scala", "c", "h", "cpp", "hpp", "py", "rb", "go", "rs", "sh"));
+
+    private final Profile profile;
+    private final CodecPool codecs;
+    private final ByteBuffer sampleBuffer;
+    private final ByteBuffer probeBuffer;
+    private final byte[] sample;
+    private final byte[] probeOutput;
+    private Deflater probe;
+
+    /**
+     * @param profile профиль сжатия
+     */
+    public CompressionPolicy(Profile profile) {
+        this(profile, null);
+    }
+
+    /**
+     * @param profile профиль сжатия
+     * @param codecs пул, из которого берутся Deflater пробного сжатия и буферы, или null
+     */
+    CompressionPolicy(Profile profile, CodecPool codecs) {
+        this.profile = profile;
+        this.codecs = codecs;
+        BufferPool buffers = codecs == null ? BufferPool.heap() : codecs.buffers();
+        this.sampleBuffer = buffers.acquire();
+        this.probeBuffer = buffers.acquire();
+        this.sample = sampleBuffer.array();
+        this.probeOutput = probeBuffer.array();
+    }
+
+    /**
+     * Выбирает способ сжатия файла
+     * @param file файл
+     * @return способ сжатия
+     * @throws IOException при ошибке чтения начала файла
+     */
+    public Decision decide(File file) throws IOException {
+        String extension = extension(file.getName());
+        if (INCOMPRESSIBLE.contains(extension) || file.length() == 0)
+            return Decision.STORE;
+        if (COMPRESSIBLE.contains(extension))
+            return Decision.deflate(profile.level, Deflater.DEFAULT_STRATEGY);
+
+        int length;
+        try (FileInputStream fis = new FileInputStream(file)) {
+            length = Utils.readFully(fis, sample);
+        }
+        if (length == 0)
+            return Decision.STORE;
+
+        double ratio = (double) probe(length) / length;
+        if (ratio >= profile.storeRatio)
+            return Decision.STORE;
+        if (ratio >= WEAK_RATIO) {
+            // Данные сжимаются слабо: поиск совпадений почти ничего не дает
+            if (profile == Profile.SPEED)
+                return Decision.deflate(Deflater.BEST_SPEED, Deflater.HUFFMAN_ONLY);
+            if (profile == Profile.BALANCED)
+                return Decision.deflate(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+        }
+        return Decision.deflate(profile.level, Deflater.DEFAULT_STRATEGY);
+    }
+
+    /**
+     * Быстро сжимает образец и возвращает размер сжатых данных. Если сжатые данные не помещаются в буфер
+     * размером с образец, возвращается размер образца: такие данные не сжимаются
+     */
+    private int probe(int length) {
+        if (probe == null)
+            probe = codecs == null ? new Deflater(Deflater.BEST_SPEED, true) : codecs.deflater(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+        probe.reset();
+        probe.setInput(sample, 0, length);
+        probe.finish();
+        int total = 0;
+        while (!probe.finished() && total < probeOutput.length)
+            total += probe.deflate(probeOutput, total, probeOutput.length - total);
+        return probe.finished() ? total : length;
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Освобождает ресурсы пробного сжатия
+     */
+    @Override
+    public void close() {
+        if (probe != null && codecs != null)
+            codecs.release(probe, Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+        else if (probe != null)
+            probe.end();
+        probe = null;
+        BufferPool buffers = codecs == null ? BufferPool.heap() : codecs.buffers();
+        buffers.release(sampleBuffer);
+        buffers.release(probeBuffer);
+    }
+
+    /**
+     * Способ сжатия записи: метод, уровень и стратегия DEFLATE
+     */
+    public static final class Decision {
+        /** Запись сохраняется без сжатия */
+        public static final Decision STORE = new Decision(ZipFormat.STORED, Deflater.NO_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+        private final int method;
+        private final int level;
+        private final int strategy;
+
+        private Decision(int method, int level, int strategy) {
+            this.method = method;
+            this.level = level;
+            this.strategy = strategy;
+        }
+
+        static Decision deflate(int level, int strategy) {
+            return new Decision(ZipFormat.DEFLATED, level, strategy);
+        }
+
+        /**
+         * @return да, если запись сохраняется без сжатия
+         */
+        public boolean isStored() {
+            return method == ZipFormat.STORED;
+        }
+
+        /**
+         * @return уровень сжатия Deflater
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * @return стратегия сжатия Deflater
+         */
+        public int getStrategy() {
+            return strategy;
+        }
+
+        @Override
+        public String toString() {
+            return isStored() ? "stored" : "deflate(level=" + level + ", strategy=" + strategy + ")";
+        }
+    }
+}
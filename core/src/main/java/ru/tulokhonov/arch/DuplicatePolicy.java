@@ -0,0 +1,27 @@
+package ru.tulokhonov.arch;
+
+/**
+ * Выбор записи при объединении архивов, если запись с таким же именем есть в нескольких архивах.
+ * Одноименные папки не считаются повторами: остается первая
+ */
+public enum DuplicatePolicy {
+    /** Остается запись из первого архива */
+    FIRST,
+    /** Остается запись из последнего архива */
+    LAST,
+    /** Объединение прерывается с ошибкой до записи результата */
+    FAIL;
+
+    /**
+     * Возвращает правило по имени без учета регистра
+     * @param name имя правила
+     * @return правило
+     * @throws IllegalArgumentException если правило с таким именем не существует
+     */
+    public static DuplicatePolicy of(String name) {
+        for (DuplicatePolicy policy : values())
+            if (policy.name().equalsIgnoreCase(name))
+                return policy;
+        throw new IllegalArgumentException("Ошибка! Неизвестное правило для повторяющихся записей: " + name);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.tulokhonov.arch;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Отбор записей архива по именам и шаблонам. Шаблон без символов *, ?, [ и { соответствует записи с таким же
+ * именем или, если это папка, всем записям внутри нее. Остальные шаблоны - glob в синтаксисе
+ * {@link java.nio.file.FileSystem#getPathMatcher(String)}: * не переходит границу папки, ** переходит
+ */
+final class EntryMatcher implements Predicate<String> {
+    private final List<String> names = new ArrayList<>();
+    private final List<PathMatcher> globs = new ArrayList<>();
+
+    /**
+     * @param patterns имена записей и шаблоны
+     * @throws IllegalArgumentException если шаблон пустой или неверный
+     */
+    EntryMatcher(Collection<String> patterns) {
+        for (String pattern : patterns) {
+            if (pattern.isEmpty())
+                throw new IllegalArgumentException("Ошибка! Пустой шаблон имени записи");
+            if (isGlob(pattern))
+                globs.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern));
+            else
+                names.add(pattern.endsWith("/") ? pattern.substring(0, pattern.length() - 1) : pattern);
+        }
+    }
+
+    /**
+     * @param name имя записи архива
+     * @return да, если запись соответствует одному из имен или шаблонов
+     */
+    @Override
+    public boolean test(String name) {
+        String trimmed = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+        for (String n : names)
+            if (trimmed.equals(n) || trimmed.startsWith(n + "/"))
+                return true;
+        if (globs.isEmpty())
+            return false;
+        Path path = Paths.get(trimmed);
+        for (PathMatcher glob : globs)
+            if (glob.matches(path))
+                return true;
+        return false;
+    }
+
+    private static boolean isGlob(String pattern) {
+        for (char c : new char[] { '*', '?', '[', '{' })
+            if (pattern.indexOf(c) >= 0)
+                return true;
+        return false;
+    }
+}
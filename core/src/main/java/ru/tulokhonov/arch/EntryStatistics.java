@@ -0,0 +1,91 @@
+package ru.tulokhonov.arch;
+
+/**
+ * Статистика обработки одной записи архива: размеры данных и время по этапам.
+ * При параллельной обработке время этапа суммируется по всем потокам
+ */
+public final class EntryStatistics {
+    private final String name;
+    private final boolean directory;
+    private final long[] nanos = new long[ArchivePhase.values().length];
+    long size;
+    long compressedSize;
+
+    EntryStatistics(String name, boolean directory) {
+        this.name = name;
+        this.directory = directory;
+    }
+
+    /**
+     * Добавляет время этапа
+     * @param phase этап
+     * @param startNanos время начала этапа по System.nanoTime()
+     */
+    void since(ArchivePhase phase, long startNanos) {
+        nanos[phase.ordinal()] += System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Добавляет время этапа и возвращает время его окончания, которое является началом следующего этапа
+     * @param phase этап
+     * @param startNanos время начала этапа по System.nanoTime()
+     * @return текущее время по System.nanoTime()
+     */
+    long lap(ArchivePhase phase, long startNanos) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - startNanos;
+        return now;
+    }
+
+    void add(ArchivePhase phase, long elapsedNanos) {
+        nanos[phase.ordinal()] += elapsedNanos;
+    }
+
+    /**
+     * @return имя записи
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return да, если запись является папкой
+     */
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return размер несжатых данных в байтах
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return размер сжатых данных в байтах
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * @param phase этап
+     * @return время этапа в наносекундах
+     */
+    public long getNanos(ArchivePhase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return степень сжатия: отношение размера сжатых данных к размеру несжатых, 1 для пустых записей
+     */
+    public double getRatio() {
+        return size == 0 ? 1 : (double) compressedSize / size;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + compressedSize + "/" + size;
+    }
+}
@@ -0,0 +1,139 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Последовательная запись файлов в {@link ZipWriter} в потоке вызывающего. Экземпляры Deflater берутся из пула
+ * для каждой записи, буферы - на время жизни объекта. Не является потокобезопасным
+ */
+class EntryWriter implements Closeable {
+    private final ZipWriter writer;
+    private final CodecPool codecs;
+    private final boolean ownsCodecs;
+    private final ByteBuffer buffer;
+    private final ByteBuffer output;
+
+    /**
+     * @param writer архив, в который пишутся записи
+     */
+    EntryWriter(ZipWriter writer) {
+        this(writer, new CodecPool(Integer.MAX_VALUE, BufferPool.heap()), true);
+    }
+
+    /**
+     * @param writer архив, в который пишутся записи
+     * @param codecs общий пул Deflater и буферов. Пул не закрывается
+     */
+    EntryWriter(ZipWriter writer, CodecPool codecs) {
+        this(writer, codecs, false);
+    }
+
+    private EntryWriter(ZipWriter writer, CodecPool codecs, boolean ownsCodecs) {
+        this.writer = writer;
+        this.codecs = codecs;
+        this.ownsCodecs = ownsCodecs;
+        this.buffer = codecs.buffers().acquire();
+        this.output = codecs.buffers().acquire();
+    }
+
+    /**
+     * Записывает файл: без сжатия с копированием через FileChannel.transferTo или со сжатием согласно решению политики
+     * @param file файл
+     * @param record метаданные записи с заполненными именем и временем изменения
+     * @param decision способ сжатия
+     * @param statistics статистика записи
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void writeFile(File file, ZipRecord record, CompressionPolicy.Decision decision, EntryStatistics statistics) throws IOException {
+        if (!decision.isStored()) {
+            try (FileInputStream fis = new FileInputStream(file)) {
+                writeDeflated(fis, record, decision, statistics);
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        CRC32 crc = new CRC32();
+        record.method = STORED;
+        record.size = Utils.checksum(file, crc);
+        record.compressedSize = record.size;
+        record.crc = crc.getValue();
+        start = statistics.lap(ArchivePhase.READ, start);
+        writer.putLocalHeader(record);
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            writer.transferFrom(fc, 0, record.size);
+        }
+        writer.closeEntry(record);
+        statistics.since(ArchivePhase.WRITE, start);
+    }
+
+    /**
+     * Сжимает данные потока в запись с дескриптором данных
+     * @param is входной поток. Поток не закрывается
+     * @param record метаданные записи с заполненными именем и временем изменения
+     * @param decision способ сжатия
+     * @param statistics статистика записи
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void writeDeflated(InputStream is, ZipRecord record, CompressionPolicy.Decision decision, EntryStatistics statistics) throws IOException {
+        Deflater deflater = codecs.deflater(decision.getLevel(), decision.getStrategy());
+        try {
+            deflate(is, deflater, record, statistics);
+        } finally {
+            codecs.release(deflater, decision.getLevel(), decision.getStrategy());
+        }
+    }
+
+    private void deflate(InputStream is, Deflater deflater, ZipRecord record, EntryStatistics statistics) throws IOException {
+        record.method = DEFLATED;
+        record.flags = FLAG_DATA_DESCRIPTOR;
+        writer.putLocalHeader(record);
+        long dataStart = writer.position();
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] bytes = buffer.array();
+        byte[] compressed = output.array();
+        int bytesRead;
+        long start = System.nanoTime();
+        while ((bytesRead = is.read(bytes)) >= 0) {
+            start = statistics.lap(ArchivePhase.READ, start);
+            deflater.setInput(bytes, 0, bytesRead);
+            while (!deflater.needsInput()) {
+                int length = deflater.deflate(compressed, 0, compressed.length);
+                start = statistics.lap(ArchivePhase.DEFLATE, start);
+                writer.write(compressed, 0, length);
+                start = statistics.lap(ArchivePhase.WRITE, start);
+            }
+            crc.update(bytes, 0, bytesRead);
+            size += bytesRead;
+            start = statistics.lap(ArchivePhase.DEFLATE, start);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(compressed, 0, compressed.length);
+            start = statistics.lap(ArchivePhase.DEFLATE, start);
+            writer.write(compressed, 0, length);
+            start = statistics.lap(ArchivePhase.WRITE, start);
+        }
+
+        record.crc = crc.getValue();
+        record.size = size;
+        record.compressedSize = writer.position() - dataStart;
+        writer.closeEntry(record);
+    }
+
+    @Override
+    public void close() {
+        codecs.buffers().release(buffer);
+        codecs.buffers().release(output);
+        if (ownsCodecs)
+            codecs.close();
+    }
+}
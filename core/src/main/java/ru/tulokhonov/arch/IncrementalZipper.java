@@ -0,0 +1,113 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ArchivingException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Инкрементальная архивация относительно предыдущего архива. Файлы, у которых совпадают размер и время изменения
+ * с манифестом предыдущего архива, переносятся в новый архив в сжатом виде без повторного сжатия.
+ * Новые и измененные файлы сжимаются, удаленные файлы в новый архив не попадают.
+ * В конец архива записывается манифест для следующего запуска. Из архива без манифеста, например созданного
+ * без инкрементального режима или другой программой, файлы не переносятся: время изменения в заголовках Zip
+ * хранится с точностью 2 секунды, и по нему нельзя отличить файл, измененный вскоре после архивации
+ */
+class IncrementalZipper {
+    private final ArchiveOptions options;
+
+    IncrementalZipper(ArchiveOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Архивирует файлы и папки в выходной поток с переносом неизмененных файлов из предыдущего архива
+     * @param files файлы и папки для архивации
+     * @param base путь к предыдущему архиву. Если архив не существует или в нем нет манифеста, все файлы сжимаются заново.
+     *             Не должен совпадать с файлом, в который пишется новый архив
+     * @param outputStream выходной поток
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    void zip(Iterator<File> files, Path base, OutputStream outputStream) {
+        try (FileChannel channel = Files.exists(base) ? FileChannel.open(base, StandardOpenOption.READ) : null;
+             ZipWriter writer = new ZipWriter(outputStream);
+             EntryWriter entries = new EntryWriter(writer);
+             CompressionPolicy policy = new CompressionPolicy(options.getProfile())) {
+
+            ZipIndex index = channel == null ? null : ZipIndex.read(channel);
+            Map<String, ZipRecord> previous = new HashMap<>();
+            ArchiveManifest previousManifest = null;
+            if (index != null) {
+                for (ZipRecord record : index.records()) {
+                    if (ArchiveManifest.isServiceEntry(record) && record.name.equals(ArchiveManifest.ENTRY_NAME))
+                        try (InputStream is = index.open(record)) {
+                            previousManifest = ArchiveManifest.read(is);
+                        }
+                    else
+                        previous.put(record.name, record);
+                }
+            }
+
+            ArchiveListener listener = options.getListener();
+            ArchiveManifest manifest = new ArchiveManifest();
+            while (files.hasNext()) {
+                File file = files.next();
+                ZipRecord record = new ZipRecord(Utils.getZipEntryName(file.toPath(), options));
+                record.dosTime = javaToDosTime(file.lastModified());
+                EntryStatistics statistics = new EntryStatistics(record.name, file.isDirectory());
+                if (file.isFile()) {
+                    ZipRecord old = previous.get(record.name);
+                    if (old != null && unchanged(old, previousManifest, file)) {
+                        long start = System.nanoTime();
+                        record = writer.copyRaw(old, index.channel(), index.dataOffset(old));
+                        statistics.since(ArchivePhase.WRITE, start);
+                    } else {
+                        entries.writeFile(file, record, policy.decide(file), statistics);
+                    }
+                    manifest.add(record.name, record.size, file.lastModified(), record.crc);
+                    statistics.size = record.size;
+                    statistics.compressedSize = record.compressedSize;
+                    listener.entryCompleted(statistics);
+                } else if (file.isDirectory()) {
+                    record.method = STORED;
+                    writer.putLocalHeader(record);
+                    writer.closeEntry(record);
+                    listener.entryCompleted(statistics);
+                }
+            }
+
+            ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+            manifest.write(manifestBytes);
+            ZipRecord manifestRecord = new ZipRecord(ArchiveManifest.ENTRY_NAME);
+            manifestRecord.service = true;
+            manifestRecord.dosTime = javaToDosTime(System.currentTimeMillis());
+            entries.writeDeflated(new ByteArrayInputStream(manifestBytes.toByteArray()), manifestRecord,
+                    CompressionPolicy.Decision.deflate(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY),
+                    new EntryStatistics(manifestRecord.name, false));
+        } catch (IOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception);
+        } catch (UncheckedIOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception.getCause());
+        }
+    }
+
+    /**
+     * Файл считается неизмененным, если совпадают размер и время изменения с точностью до миллисекунды,
+     * записанные в манифесте предыдущего архива. Файл, которого нет в манифесте, считается измененным
+     */
+    private static boolean unchanged(ZipRecord old, ArchiveManifest manifest, File file) {
+        if (old.size != file.length())
+            return false;
+        ArchiveManifest.Entry entry = manifest == null ? null : manifest.get(old.name);
+        return entry != null && entry.time == file.lastModified() && entry.size == old.size && entry.crc == old.crc;
+    }
+}
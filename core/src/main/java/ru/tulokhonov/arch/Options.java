@@ -0,0 +1,285 @@
+package ru.tulokhonov.arch;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор параметров командной строки. Параметры задаются в виде --имя или --имя=значение,
+ * остальные аргументы считаются путями к файлам и папкам
+ */
+class Options {
+    /** Значение параметра, означающее чтение Zip файла из stdin */
+    static final String STDIN = "-";
+
+    private final List<String> paths = new ArrayList<>();
+    private final ArchiveOptions archiveOptions = new ArchiveOptions();
+    private boolean threadsSpecified;
+    private String extract;
+    private boolean progress;
+    private String list;
+    private String verify;
+    private String source;
+    private boolean merge;
+    private int shardPlan = -1;
+    private int shard = -1;
+    private String plan;
+    private boolean stitch;
+    private final List<String> include = new ArrayList<>();
+    private final List<String> exclude = new ArrayList<>();
+    private int server = -1;
+    private int connect = -1;
+
+    /**
+     * Разбирает аргументы командной строки
+     * @param args аргументы
+     * @return параметры
+     * @throws IllegalArgumentException если параметр неизвестен или имеет неверное значение
+     */
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                options.paths.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+            String value = eq < 0 ? null : arg.substring(eq + 1);
+            switch (name) {
+                case "threads":
+                    options.archiveOptions.setThreads(value == null ? 0 : parseInt(name, value));
+                    options.threadsSpecified = true;
+                    break;
+                case "memory":
+                    options.archiveOptions.setMemoryBudget(parseSize(name, required(name, value)));
+                    break;
+                case "profile":
+                    options.archiveOptions.setProfile(CompressionPolicy.Profile.of(required(name, value)));
+                    break;
+                case "walk-threads":
+                    options.archiveOptions.setWalkerThreads(value == null ? 0 : parseInt(name, value));
+                    break;
+                case "sorted":
+                    options.archiveOptions.setSorted(true);
+                    break;
+                case "solid":
+                    options.archiveOptions.setSolid(true);
+                    break;
+                case "incremental":
+                    options.archiveOptions.setBaseArchive(Paths.get(required(name, value)));
+                    break;
+                case "extract":
+                    options.extract = required(name, value);
+                    break;
+                case "list":
+                    options.list = required(name, value);
+                    break;
+                case "verify":
+                    options.verify = value == null ? STDIN : value;
+                    break;
+                case "source":
+                    options.source = required(name, value);
+                    break;
+                case "merge":
+                    options.merge = true;
+                    break;
+                case "include":
+                    options.include.add(required(name, value));
+                    break;
+                case "exclude":
+                    options.exclude.add(required(name, value));
+                    break;
+                case "shard-plan":
+                    options.shardPlan = parseInt(name, required(name, value));
+                    break;
+                case "shard":
+                    options.shard = parseInt(name, required(name, value));
+                    break;
+                case "plan":
+                    options.plan = required(name, value);
+                    break;
+                case "stitch":
+                    options.stitch = true;
+                    break;
+                case "duplicates":
+                    options.archiveOptions.setDuplicatePolicy(DuplicatePolicy.of(required(name, value)));
+                    break;
+                case "progress":
+                    options.progress = true;
+                    break;
+                case "server":
+                    options.server = value == null ? ArchiveServer.DEFAULT_PORT : parsePort(name, value);
+                    break;
+                case "connect":
+                    options.connect = value == null ? ArchiveServer.DEFAULT_PORT : parsePort(name, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Ошибка! Неизвестный параметр: " + arg);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return пути к файлам и папкам для архивации или имена и шаблоны записей для извлечения
+     */
+    List<String> paths() {
+        return paths;
+    }
+
+    /**
+     * @return параметры архивации
+     */
+    ArchiveOptions archiveOptions() {
+        return archiveOptions;
+    }
+
+    /**
+     * @return путь к Zip файлу для извлечения или null, если не задан
+     */
+    String extract() {
+        return extract;
+    }
+
+    /**
+     * @return путь к Zip файлу для вывода списка записей или null, если не задан
+     */
+    String list() {
+        return list;
+    }
+
+    /**
+     * @return путь к Zip файлу для проверки, {@link #STDIN} для проверки stdin или null, если не задан
+     */
+    String verify() {
+        return verify;
+    }
+
+    /**
+     * @return исходная папка для сравнения при проверке или null
+     */
+    String source() {
+        return source;
+    }
+
+    /**
+     * @return да, если нужно объединить архивы, заданные путями, в stdout
+     */
+    boolean merge() {
+        return merge;
+    }
+
+    /**
+     * @return имена и шаблоны записей, включаемых при объединении архивов
+     */
+    List<String> include() {
+        return include;
+    }
+
+    /**
+     * @return имена и шаблоны записей, исключаемых при объединении архивов
+     */
+    List<String> exclude() {
+        return exclude;
+    }
+
+    /**
+     * @return количество частей, на которые нужно разделить файлы, или -1
+     */
+    int shardPlan() {
+        return shardPlan;
+    }
+
+    /**
+     * @return номер части плана, которую нужно архивировать, или -1
+     */
+    int shard() {
+        return shard;
+    }
+
+    /**
+     * @return путь к плану частей или null
+     */
+    String plan() {
+        return plan;
+    }
+
+    /**
+     * @return да, если нужно сшить Zip файлы частей, заданные путями, в stdout
+     */
+    boolean stitch() {
+        return stitch;
+    }
+
+    /**
+     * @return да, если нужно выводить прогресс и итоговую статистику в stderr
+     */
+    boolean progress() {
+        return progress;
+    }
+
+    /**
+     * @return порт, на котором нужно запустить сервер архиватора, или -1
+     */
+    int server() {
+        return server;
+    }
+
+    /**
+     * @return порт сервера архиватора, которому нужно передать команду, или -1
+     */
+    int connect() {
+        return connect;
+    }
+
+    /**
+     * Параметры извлечения. Если количество потоков не задано явно, при извлечении из файла
+     * используются все доступные процессоры
+     * @return параметры извлечения
+     */
+    ArchiveOptions extractOptions() {
+        if (!threadsSpecified)
+            archiveOptions.setThreads(0);
+        return archiveOptions;
+    }
+
+    private static String required(String name, String value) {
+        if (value == null || value.isEmpty())
+            throw new IllegalArgumentException("Ошибка! Не задано значение параметра --" + name);
+        return value;
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ошибка! Неверное значение параметра --" + name + ": " + value);
+        }
+    }
+
+    private static int parsePort(String name, String value) {
+        int port = parseInt(name, value);
+        if (port < 1 || port > 0xFFFF)
+            throw new IllegalArgumentException("Ошибка! Неверное значение параметра --" + name + ": " + value);
+        return port;
+    }
+
+    /**
+     * Разбирает размер с необязательным суффиксом k, m или g
+     */
+    static long parseSize(String name, String value) {
+        long multiplier = 1;
+        String digits = value;
+        char suffix = Character.toLowerCase(value.charAt(value.length() - 1));
+        if (suffix == 'k' || suffix == 'm' || suffix == 'g') {
+            multiplier = suffix == 'k' ? 1024L : suffix == 'm' ? 1024L * 1024 : 1024L * 1024 * 1024;
+            digits = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(digits) * multiplier;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ошибка! Неверное значение параметра --" + name + ": " + value);
+        }
+    }
+}
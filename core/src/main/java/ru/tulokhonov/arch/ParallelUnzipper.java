@@ -0,0 +1,319 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Параллельное извлечение из Zip файла с произвольным доступом. Читает центральный каталог,
+ * заранее создает все директории, а затем распаковывает и записывает файлы в пуле потоков.
+ * Записи без сжатия копируются из архива в файл через пул буферов с подсчетом контрольной суммы по пути,
+ * для сжатых записей переиспользуются экземпляры Inflater и буферы. Блоки режима solid распаковываются параллельно друг с другом.
+ * При одном потоке записи распаковываются в потоке вызывающего
+ */
+class ParallelUnzipper {
+    private final ArchiveOptions options;
+    private final CodecPool codecs;
+    private final boolean ownsCodecs;
+
+    ParallelUnzipper(ArchiveOptions options) {
+        this(options, new CodecPool(options.getThreads(), BufferPool.heap()), true);
+    }
+
+    /**
+     * @param options параметры извлечения
+     * @param codecs общий пул Inflater и буферов. Пул не закрывается
+     */
+    ParallelUnzipper(ArchiveOptions options, CodecPool codecs) {
+        this(options, codecs, false);
+    }
+
+    private ParallelUnzipper(ArchiveOptions options, CodecPool codecs, boolean ownsCodecs) {
+        this.options = options;
+        this.codecs = codecs;
+        this.ownsCodecs = ownsCodecs;
+    }
+
+    /**
+     * Извлекает данные Zip файла в указанный путь
+     * @param channel канал Zip файла. Канал не закрывается
+     * @param target путь для извлечения
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    void unZip(FileChannel channel, Path target) {
+        unZip(channel, target, name -> true);
+    }
+
+    /**
+     * Извлекает выбранные записи Zip файла в указанный путь. Читаются только центральный каталог
+     * и данные выбранных записей
+     * @param channel канал Zip файла. Канал не закрывается
+     * @param target путь для извлечения
+     * @param filter отбор записей по имени
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом, файл пуст или нет выбранных записей
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    void unZip(FileChannel channel, Path target, Predicate<String> filter) {
+        ZipIndex index;
+        try {
+            index = ZipIndex.read(channel);
+        } catch (IOException exception) {
+            throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip", exception);
+        }
+        if (index.records().isEmpty())
+            throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip");
+
+        ExecutorService pool = null;
+        try {
+            ArchiveListener listener = options.getListener();
+            PathValidator validator = new PathValidator(target);
+            // Если путь встречается несколько раз, как и при последовательном извлечении остается последняя запись.
+            // Пути сравниваются после разрешения, поэтому a/./b, a//b и a/b считаются одним файлом. Членам блоков
+            // solid соответствует запись блока, чтобы член блока и обычная запись не писали один файл одновременно
+            Map<Path, ZipRecord> latest = new LinkedHashMap<>();
+            Map<ZipRecord, Map<Path, String>> blocks = new LinkedHashMap<>();
+            for (ZipRecord record : index.records()) {
+                if (SolidBlock.isBlock(record)) {
+                    Map<Path, String> members = new LinkedHashMap<>();
+                    for (ZipRecord member : readTable(index, record)) {
+                        if (!filter.test(member.name))
+                            continue;
+                        Path path = validator.resolve(member.name);
+                        members.put(path, member.name);
+                        latest.remove(path);
+                        latest.put(path, record);
+                    }
+                    blocks.put(record, members);
+                    continue;
+                }
+                if (ArchiveManifest.isServiceEntry(record) || !filter.test(record.name))
+                    continue;
+                Path path = validator.resolve(record.name);
+                latest.remove(path);
+                latest.put(path, record);
+            }
+
+            if (latest.isEmpty())
+                throw new IllegalArgumentException("Ошибка! В архиве нет выбранных записей");
+
+            Set<Path> directories = new LinkedHashSet<>();
+            List<ZipRecord> files = new ArrayList<>();
+            List<ZipRecord> directoryRecords = new ArrayList<>();
+            Map<ZipRecord, Set<String>> selected = new LinkedHashMap<>();
+            for (Map.Entry<Path, ZipRecord> entry : latest.entrySet()) {
+                Path newPath = entry.getKey();
+                ZipRecord record = entry.getValue();
+                if (record.isDirectory()) {
+                    directories.add(newPath);
+                    directoryRecords.add(record);
+                    continue;
+                }
+                if (newPath.getParent() != null)
+                    directories.add(newPath.getParent());
+                if (blocks.containsKey(record))
+                    selected.computeIfAbsent(record, block -> new HashSet<>()).add(blocks.get(record).get(newPath));
+                else
+                    files.add(record);
+            }
+            for (Path directory : directories)
+                validator.createDirectories(directory);
+            for (ZipRecord record : directoryRecords)
+                listener.entryCompleted(new EntryStatistics(record.name, true));
+
+            if (options.getThreads() > 1)
+                pool = Executors.newFixedThreadPool(options.getThreads(), ParallelZipper.daemonThreads("archiver-inflate"));
+            List<Future<Integer>> futures = new ArrayList<>(files.size() + selected.size());
+            for (Map.Entry<ZipRecord, Set<String>> block : selected.entrySet()) {
+                ZipRecord record = block.getKey();
+                Set<String> names = block.getValue();
+                futures.add(submit(pool, () -> {
+                    try (InputStream is = new BufferedInputStream(index.open(record, codecs), BufferPool.DEFAULT_BUFFER_SIZE)) {
+                        return SolidBlock.extract(is, validator, names::contains,
+                                SolidBlock.ratio(record.compressedSize, record.size), listener);
+                    }
+                }));
+            }
+            for (ZipRecord record : files)
+                futures.add(submit(pool, () -> {
+                    extract(index, record, validator, listener);
+                    return 1;
+                }));
+            for (Future<Integer> future : futures)
+                await(future);
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка извлечения данных!", exception);
+        } finally {
+            if (pool != null)
+                pool.shutdownNow();
+            if (ownsCodecs)
+                codecs.close();
+        }
+    }
+
+    /**
+     * Читает таблицу членов блока solid. Распаковывается только начало блока
+     */
+    private List<ZipRecord> readTable(ZipIndex index, ZipRecord block) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(index.open(block, codecs), BufferPool.DEFAULT_BUFFER_SIZE))) {
+            return SolidBlock.readTable(in);
+        } catch (EOFException e) {
+            throw new ZipException("Ошибка! Неожиданный конец данных блока solid");
+        }
+    }
+
+    /**
+     * Передает задачу в пул потоков или, если пула нет, сразу выполняет ее в потоке вызывающего
+     */
+    private static Future<Integer> submit(ExecutorService pool, Callable<Integer> task) {
+        if (pool != null)
+            return pool.submit(task);
+        FutureTask<Integer> future = new FutureTask<>(task);
+        future.run();
+        return future;
+    }
+
+    /**
+     * Распаковывает одну запись и проверяет ее размер и контрольную сумму. Файл открывается через
+     * {@link PathValidator#open(Path)}, поэтому символическая ссылка на месте файла не перезаписывает цель ссылки.
+     * При ошибке записи или проверки файл удаляется
+     */
+    private void extract(ZipIndex index, ZipRecord record, PathValidator validator, ArchiveListener listener) throws IOException {
+        Path newPath = validator.resolve(record.name);
+        EntryStatistics statistics = new EntryStatistics(record.name, false);
+        long dataOffset = index.dataOffset(record);
+        if (record.method != STORED && record.method != DEFLATED)
+            throw new ZipException("Ошибка! Неподдерживаемый метод сжатия записи: " + record.name);
+        CRC32 crc = new CRC32();
+        long size;
+        FileChannel out = validator.open(newPath);
+        try {
+            try (FileChannel channel = out) {
+                size = record.method == STORED
+                        ? copy(index.channel(), dataOffset, record.compressedSize, channel, crc, statistics)
+                        : inflate(index.channel(), dataOffset, record, channel, crc, statistics);
+            }
+            if (size != record.size || crc.getValue() != record.crc)
+                throw new ZipException("Ошибка! Неверная контрольная сумма или размер записи: " + record.name);
+        } catch (IOException | RuntimeException e) {
+            // Поврежденный или недописанный файл не остается в папке извлечения
+            try {
+                Files.deleteIfExists(newPath);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        statistics.size = size;
+        statistics.compressedSize = record.compressedSize;
+        listener.entryCompleted(statistics);
+    }
+
+    /**
+     * Распаковывает сжатые данные записи, читая архив по смещению без общего состояния канала
+     * @return размер распакованных данных
+     */
+    private long inflate(FileChannel channel, long dataOffset, ZipRecord record, FileChannel out, CRC32 crc,
+                         EntryStatistics statistics) throws IOException {
+        Inflater inflater = codecs.inflater();
+        ByteBuffer input = codecs.buffers().acquire();
+        ByteBuffer output = codecs.buffers().acquire();
+        try {
+            long position = dataOffset;
+            long remaining = record.compressedSize;
+            long size = 0;
+            long start = System.nanoTime();
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (remaining == 0)
+                        throw new EOFException("Неожиданный конец сжатых данных записи: " + record.name);
+                    input.clear();
+                    input.limit((int) Math.min(input.capacity(), remaining));
+                    int bytesRead = channel.read(input, position);
+                    if (bytesRead < 0)
+                        throw new EOFException("Неожиданный конец Zip файла");
+                    position += bytesRead;
+                    remaining -= bytesRead;
+                    inflater.setInput(input.array(), 0, bytesRead);
+                    start = statistics.lap(ArchivePhase.READ, start);
+                }
+                int length = inflater.inflate(output.array());
+                if (length == 0 && inflater.needsDictionary())
+                    throw new ZipException("Ошибка! Неверные сжатые данные записи: " + record.name);
+                crc.update(output.array(), 0, length);
+                start = statistics.lap(ArchivePhase.INFLATE, start);
+                output.clear();
+                output.limit(length);
+                while (output.hasRemaining())
+                    out.write(output);
+                start = statistics.lap(ArchivePhase.WRITE, start);
+                size += length;
+            }
+            return size;
+        } catch (DataFormatException e) {
+            throw new ZipException("Ошибка! Неверные сжатые данные записи: " + record.name);
+        } finally {
+            codecs.release(inflater);
+            codecs.buffers().release(input);
+            codecs.buffers().release(output);
+        }
+    }
+
+    /**
+     * Копирует данные записи без сжатия и считает их контрольную сумму по пути, не перечитывая записанный файл
+     * @return размер скопированных данных
+     */
+    private long copy(FileChannel channel, long dataOffset, long count, FileChannel out, CRC32 crc,
+                      EntryStatistics statistics) throws IOException {
+        ByteBuffer buffer = codecs.buffers().acquire();
+        try {
+            long position = dataOffset;
+            long remaining = count;
+            long start = System.nanoTime();
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), remaining));
+                int bytesRead = channel.read(buffer, position);
+                if (bytesRead < 0)
+                    throw new EOFException("Неожиданный конец Zip файла");
+                position += bytesRead;
+                remaining -= bytesRead;
+                crc.update(buffer.array(), 0, bytesRead);
+                start = statistics.lap(ArchivePhase.READ, start);
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+                start = statistics.lap(ArchivePhase.WRITE, start);
+            }
+            return count;
+        } finally {
+            codecs.buffers().release(buffer);
+        }
+    }
+
+    private static int await(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Извлечение прервано");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package ru.tulokhonov.arch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Параллельный обход дерева директорий на ForkJoinPool. Работа делится по директориям, атрибуты каждого файла
+ * читаются один раз через {@link BasicFileAttributes} и сохраняются в возвращаемых объектах File,
+ * поэтому последующие вызовы isFile(), isDirectory(), length() и lastModified() не обращаются к файловой системе.
+ * Символьные ссылки не раскрываются при обходе, как и в {@link Files#walk(Path, FileVisitOption...)}
+ */
+class ParallelWalker {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final File END = new File("");
+
+    private final int parallelism;
+    private final boolean ordered;
+
+    /**
+     * @param parallelism количество потоков обхода
+     * @param ordered если да, результат возвращается в детерминированном порядке: директория, затем ее содержимое,
+     *                отсортированное по имени. В этом режиме результат обхода накапливается в памяти целиком
+     */
+    ParallelWalker(int parallelism, boolean ordered) {
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Обходит дерево директорий и возвращает поток файлов и директорий, включая корень.
+     * В режиме без сортировки файлы поступают в поток по мере обхода через ограниченную очередь.
+     * Поток необходимо закрыть
+     * @param root корневая директория
+     * @return поток файлов и директорий
+     * @throws UncheckedIOException при ошибке ввода-вывода во время обхода
+     */
+    Stream<File> walk(Path root) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        if (ordered) {
+            try {
+                return pool.invoke(new OrderedWalk(attributed(root))).stream();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        BlockingQueue<File> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        pool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                try {
+                    AttributedFile file = attributed(root);
+                    queue.put(file);
+                    if (descend(file))
+                        new StreamingWalk(root, queue, failure).invoke();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException ignored) {
+                        // Поток закрыт до окончания обхода
+                    }
+                }
+            }
+        });
+
+        Iterator<File> iterator = new Iterator<File>() {
+            private File next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new UncheckedIOException(new InterruptedIOException("Обход директорий прерван"));
+                    }
+                }
+                if (next == END) {
+                    Throwable e = failure.get();
+                    if (e instanceof IOException)
+                        throw new UncheckedIOException((IOException) e);
+                    if (e instanceof RuntimeException)
+                        throw (RuntimeException) e;
+                    if (e != null)
+                        throw new IllegalStateException(e);
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public File next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                File file = next;
+                next = null;
+                return file;
+            }
+        };
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(pool::shutdownNow);
+    }
+
+    /**
+     * Считает размер всех файлов в дереве директорий
+     * @param root корневая директория
+     * @return размер файлов в байтах
+     * @throws IOException при ошибке ввода-вывода
+     */
+    long size(Path root) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            AttributedFile file = attributed(root);
+            return descend(file) ? pool.invoke(new SizeTask(root)) : file.isFile() ? file.length() : 0;
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Читает атрибуты пути один раз. Для символьных ссылок дополнительно читаются атрибуты цели,
+     * чтобы isFile() и isDirectory() вели себя как у обычного {@link File}
+     */
+    private static AttributedFile attributed(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isSymbolicLink())
+            return new AttributedFile(path, attributes, false);
+        try {
+            return new AttributedFile(path, Files.readAttributes(path, BasicFileAttributes.class), true);
+        } catch (IOException ignored) {
+            // Битая ссылка остается ссылкой
+            return new AttributedFile(path, attributes, true);
+        }
+    }
+
+    /**
+     * Перечисляет содержимое директории с атрибутами. Директории, являющиеся символьными ссылками, не раскрываются
+     */
+    private static List<AttributedFile> list(Path dir, boolean sorted) {
+        List<AttributedFile> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream)
+                children.add(attributed(child));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        if (sorted)
+            children.sort(Comparator.comparing(File::getName));
+        return children;
+    }
+
+    private static boolean descend(AttributedFile file) {
+        return file.attributes.isDirectory() && !file.link;
+    }
+
+    /**
+     * Обход с передачей файлов в очередь по мере чтения директорий
+     */
+    private static final class StreamingWalk extends RecursiveAction {
+        private final Path dir;
+        private final BlockingQueue<File> queue;
+        private final AtomicReference<Throwable> failure;
+
+        StreamingWalk(Path dir, BlockingQueue<File> queue, AtomicReference<Throwable> failure) {
+            this.dir = dir;
+            this.queue = queue;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (failure.get() != null)
+                return;
+            List<StreamingWalk> subtasks = new ArrayList<>();
+            try {
+                for (AttributedFile child : list(dir, false)) {
+                    while (!queue.offer(child, 100, TimeUnit.MILLISECONDS))
+                        if (failure.get() != null || getPool().isShutdown())
+                            return;
+                    if (descend(child))
+                        subtasks.add(new StreamingWalk(child.toPath(), queue, failure));
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, new InterruptedIOException("Обход директорий прерван"));
+                return;
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e instanceof UncheckedIOException ? e.getCause() : e);
+                return;
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * Обход с детерминированным порядком: директория, затем содержимое, отсортированное по имени
+     */
+    private static final class OrderedWalk extends RecursiveTask<List<File>> {
+        private final AttributedFile dir;
+
+        OrderedWalk(AttributedFile dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<File> compute() {
+            List<File> result = new ArrayList<>();
+            result.add(dir);
+            if (!descend(dir))
+                return result;
+
+            List<AttributedFile> children = list(dir.toPath(), true);
+            List<OrderedWalk> subtasks = new ArrayList<>();
+            for (AttributedFile child : children)
+                if (descend(child))
+                    subtasks.add(new OrderedWalk(child));
+            invokeAll(subtasks);
+
+            Iterator<OrderedWalk> subtask = subtasks.iterator();
+            for (AttributedFile child : children)
+                if (descend(child))
+                    result.addAll(subtask.next().join());
+                else
+                    result.add(child);
+            return result;
+        }
+    }
+
+    /**
+     * Подсчет размера файлов в директории и поддиректориях
+     */
+    private static final class SizeTask extends RecursiveTask<Long> {
+        private final Path dir;
+
+        SizeTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected Long compute() {
+            long size = 0;
+            List<SizeTask> subtasks = new ArrayList<>();
+            for (AttributedFile child : list(dir, false)) {
+                if (descend(child))
+                    subtasks.add(new SizeTask(child.toPath()));
+                else if (child.attributes.isRegularFile())
+                    size += child.attributes.size();
+            }
+            for (SizeTask subtask : invokeAll(subtasks))
+                size += subtask.join();
+            return size;
+        }
+    }
+
+    /**
+     * Файл с атрибутами, прочитанными при обходе
+     */
+    private static final class AttributedFile extends File {
+        private final transient BasicFileAttributes attributes;
+        private final boolean link;
+
+        AttributedFile(Path path, BasicFileAttributes attributes, boolean link) {
+            super(path.toString());
+            this.attributes = attributes;
+            this.link = link;
+        }
+
+        @Override
+        public boolean isFile() {
+            return attributes.isRegularFile();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return attributes.isDirectory();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long length() {
+            return attributes.size();
+        }
+
+        @Override
+        public long lastModified() {
+            return attributes.lastModifiedTime().toMillis();
+        }
+    }
+}
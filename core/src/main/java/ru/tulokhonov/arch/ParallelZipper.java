@@ -0,0 +1,383 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ArchivingException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Параллельная архивация по принципу pigz. Поток чтения делит файлы на блоки, пул потоков сжимает блоки
+ * независимо (каждый блок использует последние 32 КБ предыдущего блока как словарь) и считает CRC32,
+ * уровень и стратегия сжатия выбираются для каждого файла политикой сжатия,
+ * а вызывающий поток записывает сжатые блоки в архив в исходном порядке.
+ * Объем данных в обработке ограничен {@link ArchiveOptions#getMemoryBudget()}, буферы блоков переиспользуются.
+ * Объект рассчитан на однократное использование
+ */
+class ParallelZipper {
+    static final int CHUNK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final long POLL_MILLIS = 100;
+    private static final int OUTPUT_SIZE = CHUNK_SIZE + (CHUNK_SIZE >> 4) + 64;
+
+    private final ArchiveOptions options;
+    private final BlockingQueue<Item> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final CodecPool codecs = new CodecPool(Integer.MAX_VALUE, BufferPool.heap());
+    private final Semaphore budget;
+    private final BufferPool inputs;
+    private final BufferPool outputs;
+    private volatile boolean aborted;
+
+    ParallelZipper(ArchiveOptions options) {
+        this.options = options;
+        // Каждый блок в обработке занимает входной буфер и буфер сжатых данных
+        int permits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, options.getMemoryBudget() / (2L * CHUNK_SIZE)));
+        this.budget = new Semaphore(permits);
+        // Входной буфер блока нужен еще и следующему блоку файла как словарь
+        this.inputs = new BufferPool(CHUNK_SIZE, false, permits + 1);
+        this.outputs = new BufferPool(OUTPUT_SIZE, false, permits);
+    }
+
+    /**
+     * Архивирует файлы и папки в выходной поток
+     * @param files файлы и папки для архивации
+     * @param outputStream выходной поток
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    void zip(Iterator<File> files, OutputStream outputStream) {
+        ExecutorService pool = Executors.newFixedThreadPool(options.getThreads(), daemonThreads("archiver-deflate"));
+        Thread reader = new Thread(() -> produce(files, pool), "archiver-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            ZipWriter writer = new ZipWriter(outputStream);
+            consume(writer);
+            writer.close();
+        } catch (IOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception);
+        } catch (UncheckedIOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception.getCause());
+        } finally {
+            aborted = true;
+            reader.interrupt();
+            pool.shutdownNow();
+            // Экземпляры, которые еще сжимают блоки, освобождаются при возврате в закрытый пул
+            codecs.close();
+        }
+    }
+
+    /**
+     * Поток записи: забирает элементы из очереди в исходном порядке и пишет их в архив
+     */
+    private void consume(ZipWriter writer) throws IOException {
+        ArchiveListener listener = options.getListener();
+        ZipRecord current = null;
+        EntryStatistics statistics = null;
+        ByteBuffer previousInput = null;
+        while (true) {
+            Item item = take();
+            if (item.storedFile != null) {
+                // Файл не должен измениться после подсчета контрольной суммы
+                ZipRecord record = await(item.checksum);
+                long start = System.nanoTime();
+                writer.putLocalHeader(record);
+                try (FileChannel channel = FileChannel.open(item.storedFile.toPath(), StandardOpenOption.READ)) {
+                    writer.transferFrom(channel, 0, record.size);
+                }
+                writer.closeEntry(record);
+                item.statistics.since(ArchivePhase.WRITE, start);
+                item.statistics.size = record.size;
+                item.statistics.compressedSize = record.compressedSize;
+                listener.entryCompleted(item.statistics);
+            } else if (item.record != null) {
+                current = item.record;
+                statistics = item.statistics;
+                long start = System.nanoTime();
+                writer.putLocalHeader(current);
+                if (current.isDirectory()) {
+                    writer.closeEntry(current);
+                    listener.entryCompleted(statistics);
+                } else {
+                    statistics.since(ArchivePhase.WRITE, start);
+                }
+            } else if (item.chunk != null) {
+                Chunk chunk = await(item.chunk);
+                // Предыдущий блок больше не нужен как словарь
+                inputs.release(previousInput);
+                previousInput = item.last ? null : chunk.input;
+                if (item.last)
+                    inputs.release(chunk.input);
+                long start = System.nanoTime();
+                writer.write(chunk.data, 0, chunk.length);
+                outputs.release(chunk.output);
+                budget.release();
+                current.crc = crc32Combine(current.crc, chunk.crc, chunk.inputLength);
+                current.compressedSize += chunk.length;
+                current.size += chunk.inputLength;
+                statistics.add(ArchivePhase.DEFLATE, chunk.nanos);
+                if (item.last) {
+                    writer.closeEntry(current);
+                    statistics.since(ArchivePhase.WRITE, start);
+                    statistics.size = current.size;
+                    statistics.compressedSize = current.compressedSize;
+                    listener.entryCompleted(statistics);
+                } else {
+                    statistics.since(ArchivePhase.WRITE, start);
+                }
+            } else if (item.error != null) {
+                if (item.error instanceof IOException)
+                    throw (IOException) item.error;
+                if (item.error instanceof RuntimeException)
+                    throw (RuntimeException) item.error;
+                throw new ArchivingException("Ошибка создания архива!", item.error);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Поток чтения: перечисляет файлы, читает их блоками и отправляет блоки на сжатие
+     */
+    private void produce(Iterator<File> files, ExecutorService pool) {
+        try (CompressionPolicy policy = new CompressionPolicy(options.getProfile())) {
+            while (files.hasNext()) {
+                File file = files.next();
+                if (file.isFile())
+                    produceFile(file, policy.decide(file), pool);
+                else if (file.isDirectory()) {
+                    ZipRecord record = directoryRecord(file);
+                    put(new Item(record, new EntryStatistics(record.name, true)));
+                }
+            }
+            put(Item.END);
+        } catch (CancellationException ignored) {
+            // Запись прервана, поток записи сам сообщит об ошибке
+        } catch (Throwable e) {
+            try {
+                put(new Item(e));
+            } catch (CancellationException ignored) {
+                // Запись прервана раньше
+            }
+        }
+    }
+
+    private void produceFile(File file, CompressionPolicy.Decision decision, ExecutorService pool) throws IOException {
+        ZipRecord record = new ZipRecord(Utils.getZipEntryName(file.toPath(), options));
+        record.dosTime = javaToDosTime(file.lastModified());
+        // Время чтения добавляет поток чтения, время сжатия и записи - поток записи
+        EntryStatistics statistics = new EntryStatistics(record.name, false);
+        if (decision.isStored()) {
+            // Запись без сжатия: контрольная сумма считается в пуле, данные копирует поток записи
+            record.method = STORED;
+            put(new Item(record, file, pool.submit(() -> {
+                long start = System.nanoTime();
+                CRC32 crc = new CRC32();
+                record.size = Utils.checksum(file, crc);
+                record.compressedSize = record.size;
+                record.crc = crc.getValue();
+                statistics.since(ArchivePhase.READ, start);
+                return record;
+            }), statistics));
+            return;
+        }
+        record.method = DEFLATED;
+        record.flags = FLAG_DATA_DESCRIPTOR;
+        put(new Item(record, statistics));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer dictionary = null;
+            boolean last = false;
+            while (!last) {
+                acquireBudget();
+                ByteBuffer input = inputs.acquire();
+                long start = System.nanoTime();
+                int length = Utils.readFully(channel, input);
+                statistics.since(ArchivePhase.READ, start);
+                last = length < CHUNK_SIZE;
+                ByteBuffer chunkDictionary = dictionary;
+                boolean finish = last;
+                put(new Item(pool.submit(() -> deflate(input, length, chunkDictionary, finish, decision)), last));
+                dictionary = input;
+            }
+        }
+    }
+
+    /**
+     * Сжимает блок. Последний блок файла завершает поток DEFLATE, остальные завершаются SYNC_FLUSH,
+     * чтобы сжатые блоки можно было записать друг за другом
+     */
+    private Chunk deflate(ByteBuffer input, int length, ByteBuffer dictionary, boolean last, CompressionPolicy.Decision decision) {
+        long start = System.nanoTime();
+        // Сжатие ведется экземплярами с уже примененными уровнем и стратегией, чтобы смена параметров не влияла на словарь
+        Deflater deflater = codecs.deflater(decision.getLevel(), decision.getStrategy());
+        try {
+            if (dictionary != null)
+                deflater.setDictionary(dictionary.array(), CHUNK_SIZE - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            deflater.setInput(input.array(), 0, length);
+            ByteBuffer buffer = outputs.acquire();
+            byte[] output = buffer.array();
+            int total = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (total == output.length)
+                        output = Arrays.copyOf(output, output.length * 2);
+                    total += deflater.deflate(output, total, output.length - total);
+                }
+            } else {
+                int available;
+                int written;
+                do {
+                    if (total == output.length)
+                        output = Arrays.copyOf(output, output.length * 2);
+                    available = output.length - total;
+                    written = deflater.deflate(output, total, available, Deflater.SYNC_FLUSH);
+                    total += written;
+                } while (written == available);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(input.array(), 0, length);
+            return new Chunk(input, buffer, output, total, crc.getValue(), length, System.nanoTime() - start);
+        } finally {
+            codecs.release(deflater, decision.getLevel(), decision.getStrategy());
+        }
+    }
+
+    private ZipRecord directoryRecord(File file) {
+        ZipRecord record = new ZipRecord(Utils.getZipEntryName(file.toPath(), options));
+        record.method = STORED;
+        record.dosTime = javaToDosTime(file.lastModified());
+        return record;
+    }
+
+    private void put(Item item) {
+        try {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS))
+                if (aborted)
+                    throw new CancellationException();
+        } catch (InterruptedException e) {
+            throw new CancellationException();
+        }
+    }
+
+    private void acquireBudget() {
+        try {
+            while (!budget.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS))
+                if (aborted)
+                    throw new CancellationException();
+        } catch (InterruptedException e) {
+            throw new CancellationException();
+        }
+    }
+
+    private Item take() throws IOException {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Архивация прервана");
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Архивация прервана");
+        } catch (ExecutionException e) {
+            throw new IOException("Ошибка сжатия данных", e.getCause());
+        }
+    }
+
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Сжатый блок файла
+     */
+    private static final class Chunk {
+        final ByteBuffer input;
+        final ByteBuffer output;
+        final byte[] data;
+        final int length;
+        final long crc;
+        final int inputLength;
+        final long nanos;
+
+        /**
+         * @param input входной буфер блока
+         * @param output буфер из пула для сжатых данных
+         * @param data сжатые данные: массив буфера output или увеличенная копия, если данные в него не поместились
+         * @param nanos время сжатия блока
+         */
+        Chunk(ByteBuffer input, ByteBuffer output, byte[] data, int length, long crc, int inputLength, long nanos) {
+            this.input = input;
+            this.output = output;
+            this.data = data;
+            this.length = length;
+            this.crc = crc;
+            this.inputLength = inputLength;
+            this.nanos = nanos;
+        }
+    }
+
+    /**
+     * Элемент очереди записи: начало записи, сжатый блок, запись без сжатия, ошибка или конец архива
+     */
+    private static final class Item {
+        static final Item END = new Item((Throwable) null);
+
+        final ZipRecord record;
+        final Future<Chunk> chunk;
+        final boolean last;
+        final File storedFile;
+        final Future<ZipRecord> checksum;
+        final Throwable error;
+        final EntryStatistics statistics;
+
+        Item(ZipRecord record, EntryStatistics statistics) {
+            this(record, null, false, null, null, null, statistics);
+        }
+
+        Item(Future<Chunk> chunk, boolean last) {
+            this(null, chunk, last, null, null, null, null);
+        }
+
+        Item(ZipRecord record, File storedFile, Future<ZipRecord> checksum, EntryStatistics statistics) {
+            this(record, null, false, storedFile, checksum, null, statistics);
+        }
+
+        Item(Throwable error) {
+            this(null, null, false, null, null, error, null);
+        }
+
+        private Item(ZipRecord record, Future<Chunk> chunk, boolean last, File storedFile, Future<ZipRecord> checksum,
+                     Throwable error, EntryStatistics statistics) {
+            this.record = record;
+            this.chunk = chunk;
+            this.last = last;
+            this.storedFile = storedFile;
+            this.checksum = checksum;
+            this.error = error;
+            this.statistics = statistics;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.tulokhonov.arch;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Проверка и подготовка путей извлекаемых записей (защита от Zip Slip без обращений к файловой системе на каждую запись).
+ * Канонический путь папки извлечения вычисляется один раз, имена записей проверяются лексически,
+ * а каждая папка проверяется по каноническому пути и создается только при первом обращении.
+ * Файлы открываются без перехода по символическим ссылкам. Потокобезопасен
+ * @see "https://snyk.io/research/zip-slip-vulnerability"
+ */
+class PathValidator {
+    private final Path target;
+    private final Set<Path> directories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param target путь для извлечения. Создается, если не существует
+     * @throws IOException при ошибке создания папки
+     */
+    PathValidator(Path target) throws IOException {
+        Files.createDirectories(target);
+        this.target = target.toFile().getCanonicalFile().toPath();
+        directories.add(this.target);
+    }
+
+    /**
+     * Проверяет имя записи и возвращает путь к ней внутри папки извлечения
+     * @param entryName имя записи
+     * @return путь записи
+     * @throws IOException если в результате извлечения запись могла быть записана вне папки извлечения
+     */
+    Path resolve(String entryName) throws IOException {
+        Path path = target.resolve(entryName).normalize();
+        if (path.equals(target) || !path.startsWith(target))
+            throw new IOException("Ошибка! Неверная запись в файле Zip: " + entryName);
+        return path;
+    }
+
+    /**
+     * Создает папку, если она еще не создана. Папка, путь к которой через символические ссылки ведет
+     * за пределы папки извлечения, не создается
+     * @param directory папка внутри папки извлечения, полученная из {@link #resolve(String)}
+     * @throws IOException если папка находится вне папки извлечения или при ошибке создания
+     */
+    void createDirectories(Path directory) throws IOException {
+        if (directories.contains(directory))
+            return;
+        if (directory.getParent() != null && directory.getParent().startsWith(target))
+            createDirectories(directory.getParent());
+        if (!directory.toFile().getCanonicalFile().toPath().startsWith(target))
+            throw new IOException("Ошибка! Неверная запись в файле Zip: " + target.relativize(directory));
+        Files.createDirectories(directory);
+        directories.add(directory);
+    }
+
+    /**
+     * Создает родительские папки и открывает файл записи для записи с заменой содержимого.
+     * Если на месте файла находится символическая ссылка, файл не открывается
+     * @param file путь записи, полученный из {@link #resolve(String)}
+     * @return канал файла
+     * @throws IOException при ошибке ввода-вывода
+     */
+    FileChannel open(Path file) throws IOException {
+        createDirectories(file.getParent());
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING, LinkOption.NOFOLLOW_LINKS);
+    }
+}
@@ -0,0 +1,51 @@
+package ru.tulokhonov.arch;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически выводит прогресс архивации или извлечения одной обновляемой строкой,
+ * а при закрытии - итоговую строку и сводку в формате JSON
+ */
+class ProgressReporter implements Closeable {
+    private static final long PERIOD_MILLIS = 1000;
+
+    private final ArchiveStatistics statistics;
+    private final PrintStream out;
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(ParallelZipper.daemonThreads("archiver-progress"));
+
+    /**
+     * @param statistics статистика, которая заполняется во время работы
+     * @param out поток вывода, обычно System.err
+     */
+    ProgressReporter(ArchiveStatistics statistics, PrintStream out) {
+        this.statistics = statistics;
+        this.out = out;
+        timer.scheduleAtFixedRate(this::print, PERIOD_MILLIS, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void print() {
+        out.print('\r' + line());
+        out.flush();
+    }
+
+    String line() {
+        return String.format(Locale.ROOT, "Записей: %d, %.1f МБ, %.1f МБ/с, %.0f записей/с, сжатие %.3f",
+                statistics.getEntries(), statistics.getSize() / 1048576.0, statistics.getBytesPerSecond() / 1048576.0,
+                statistics.getEntriesPerSecond(), statistics.getRatio());
+    }
+
+    @Override
+    public synchronized void close() {
+        timer.shutdownNow();
+        statistics.finish();
+        out.println('\r' + line());
+        out.println(statistics.toJson());
+        out.flush();
+    }
+}
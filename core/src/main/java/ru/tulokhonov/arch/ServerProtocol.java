@@ -0,0 +1,178 @@
+package ru.tulokhonov.arch;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Протокол обмена клиента и сервера архиватора через TCP соединение.
+ * Запрос: сигнатура, ключ доступа, рабочая папка клиента, аргументы командной строки и признак входных данных,
+ * затем, если входные данные есть, содержимое stdin кадрами [канал][длина][данные] до кадра нулевой длины.
+ * Ответ: кадры stdout и stderr и завершающий кадр [{@link #END}][код возврата].
+ * Ключ доступа сервер создает при запуске и записывает в файл {@link #tokenFile(int)}, доступный только владельцу,
+ * поэтому команды могут выполнять только пользователи, которые могут прочитать этот файл
+ */
+final class ServerProtocol {
+    static final int MAGIC = 0x41524331;
+    static final int END = 0;
+    static final int STDIN = 1;
+    static final int STDOUT = 2;
+    static final int STDERR = 3;
+    static final int FRAME_SIZE = 64 * 1024;
+
+    private ServerProtocol() {
+    }
+
+    /**
+     * Файл ключа доступа к серверу: в папке XDG_RUNTIME_DIR, если она задана, иначе в домашней папке пользователя
+     * @param port порт сервера
+     * @return путь к файлу ключа
+     */
+    static Path tokenFile(int port) {
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path directory = runtime != null && !runtime.isEmpty() && Files.isDirectory(Paths.get(runtime))
+                ? Paths.get(runtime)
+                : Paths.get(System.getProperty("user.home"));
+        return directory.resolve(".archiver-" + port + ".token");
+    }
+
+    /**
+     * Читает ключ доступа к серверу
+     * @param port порт сервера
+     * @return ключ доступа
+     * @throws IOException если файла ключа нет (сервер не запущен) или при ошибке чтения
+     */
+    static String readToken(int port) throws IOException {
+        Path file = tokenFile(port);
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            throw new IOException("Ошибка! Сервер архиватора не запущен на порту " + port + ": нет файла ключа " + file, e);
+        }
+    }
+
+    /**
+     * Записывает кадр. Кадр нулевой длины означает конец данных канала
+     * @param out выходной поток соединения. Запись кадров синхронизирована по нему
+     * @param channel канал
+     * @param b данные
+     * @param off смещение данных
+     * @param len длина данных
+     * @throws IOException при ошибке ввода-вывода
+     */
+    static void writeFrame(DataOutputStream out, int channel, byte[] b, int off, int len) throws IOException {
+        synchronized (out) {
+            out.writeByte(channel);
+            out.writeInt(len);
+            out.write(b, off, len);
+        }
+    }
+
+    /**
+     * Читает длину следующего кадра
+     * @param in входной поток соединения
+     * @param channel ожидаемый канал
+     * @return длина данных кадра
+     * @throws IOException если кадр неверный или при ошибке ввода-вывода
+     */
+    static int readFrame(DataInputStream in, int channel) throws IOException {
+        int actual = in.readUnsignedByte();
+        int length = in.readInt();
+        if (actual != channel || length < 0 || length > FRAME_SIZE)
+            throw new IOException("Ошибка! Неверный кадр протокола сервера архиватора");
+        return length;
+    }
+
+    /**
+     * Поток данных одного канала, передаваемых кадрами. Закрытие потока только сбрасывает буфер соединения
+     */
+    static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final int channel;
+
+        FrameOutputStream(DataOutputStream out, int channel) {
+            this.out = out;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int length = Math.min(len, FRAME_SIZE);
+                writeFrame(out, channel, b, off, length);
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Поток данных, принимаемых кадрами одного канала до кадра нулевой длины
+     */
+    static class FrameInputStream extends InputStream {
+        private final DataInputStream in;
+        private final int channel;
+        private int remaining;
+        private boolean finished;
+
+        FrameInputStream(DataInputStream in, int channel) {
+            this.in = in;
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (finished)
+                return -1;
+            if (remaining == 0) {
+                remaining = readFrame(in, channel);
+                if (remaining == 0) {
+                    finished = true;
+                    return -1;
+                }
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n < 0)
+                throw new IOException("Ошибка! Соединение с клиентом архиватора прервано");
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return finished ? 0 : Math.min(remaining, in.available());
+        }
+    }
+}
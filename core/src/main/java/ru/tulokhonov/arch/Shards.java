@@ -0,0 +1,145 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ArchivingException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Создание архива по частям (шардам). План делит список файлов на непрерывные части примерно равного объема,
+ * каждая часть архивируется отдельно, в том числе в другом процессе или на другой машине с общим хранилищем,
+ * а затем части сшиваются в один Zip файл: локальные заголовки и данные записей каждой части копируются одним
+ * блоком без повторного сжатия, а смещения записей пересчитываются в общем центральном каталоге.
+ * План - текстовый файл в UTF-8: строка заголовка {@link #PLAN_HEADER} с количеством частей, затем строки
+ * «номер части, табуляция, путь». Пути записываются относительно рабочей папки, поэтому имена записей
+ * совпадают с архивом, созданным целиком
+ */
+final class Shards {
+    static final String PLAN_HEADER = "archiver-shard-plan";
+
+    private Shards() {
+    }
+
+    /**
+     * Делит файлы на части примерно равного объема, сохраняя их порядок: каждая часть - непрерывный
+     * отрезок списка, поэтому файлы одной папки обычно попадают в одну часть
+     * @param files файлы и папки для архивации
+     * @param count количество частей
+     * @return части, некоторые могут быть пустыми
+     * @throws IllegalArgumentException если количество частей не положительное
+     */
+    static List<List<File>> plan(List<File> files, int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("Ошибка! Неверное количество частей: " + count);
+        List<List<File>> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            shards.add(new ArrayList<>());
+        long total = 0;
+        long[] sizes = new long[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            sizes[i] = files.get(i).isFile() ? files.get(i).length() : 0;
+            total += sizes[i];
+        }
+        long done = 0;
+        for (int i = 0; i < files.size(); i++) {
+            // Часть выбирается по середине файла, поэтому большой файл попадает туда, где лежит большая его доля
+            int shard = total == 0 ? 0 : (int) Math.min(count - 1, (done + sizes[i] / 2) * (double) count / total);
+            shards.get(shard).add(files.get(i));
+            done += sizes[i];
+        }
+        return shards;
+    }
+
+    /**
+     * Записывает план
+     * @param shards части
+     * @param os выходной поток. Поток не закрывается
+     * @param options параметры: пути внутри рабочей папки записываются относительно нее
+     * @throws IllegalArgumentException если путь содержит перевод строки
+     * @throws IOException при ошибке ввода-вывода
+     */
+    static void writePlan(List<List<File>> shards, OutputStream os, ArchiveOptions options) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        writer.write(PLAN_HEADER + "\t" + shards.size() + "\n");
+        Path directory = options.getWorkingDirectory();
+        for (int i = 0; i < shards.size(); i++) {
+            for (File file : shards.get(i)) {
+                Path path = file.toPath();
+                if (directory != null && path.startsWith(directory) && !path.equals(directory))
+                    path = directory.relativize(path);
+                String line = path.toString();
+                if (line.indexOf('\n') >= 0 || line.indexOf('\r') >= 0)
+                    throw new IllegalArgumentException("Ошибка! Путь с переводом строки не поддерживается планом: " + line);
+                writer.write(i + "\t" + line + "\n");
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Читает из плана файлы одной части
+     * @param is входной поток плана
+     * @param shard номер части, начиная с 0
+     * @param options параметры: относительные пути разрешаются относительно рабочей папки
+     * @return файлы и папки части в порядке плана
+     * @throws IllegalArgumentException если план неверный или части с таким номером нет
+     * @throws IOException при ошибке ввода-вывода
+     */
+    static List<File> readPlan(InputStream is, int shard, ArchiveOptions options) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        String[] fields = header == null ? new String[0] : header.split("\t");
+        if (fields.length != 2 || !fields[0].equals(PLAN_HEADER))
+            throw new IllegalArgumentException("Ошибка! Неверный план частей архива");
+        int count = parseInt(fields[1], header);
+        if (shard < 0 || shard >= count)
+            throw new IllegalArgumentException("Ошибка! В плане нет части с номером " + shard + ", частей: " + count);
+        List<File> files = new ArrayList<>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            int tab = line.indexOf('\t');
+            if (tab < 0)
+                throw new IllegalArgumentException("Ошибка! Неверная строка плана: " + line);
+            if (parseInt(line.substring(0, tab), line) == shard)
+                files.add(Utils.resolve(line.substring(tab + 1), options));
+        }
+        return files;
+    }
+
+    /**
+     * Сшивает части в один Zip файл без повторного сжатия
+     * @param parts пути к Zip файлам частей в порядке плана
+     * @param outputStream выходной поток
+     * @throws IllegalArgumentException если часть не является Zip файлом
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    static void stitch(List<Path> parts, OutputStream outputStream) {
+        try (ZipWriter writer = new ZipWriter(outputStream)) {
+            for (Path part : parts) {
+                try (FileChannel channel = FileChannel.open(part, StandardOpenOption.READ)) {
+                    ZipIndex index;
+                    try {
+                        index = ZipIndex.read(channel);
+                    } catch (IOException exception) {
+                        throw new IllegalArgumentException("Ошибка! Неверный Zip файл: " + part, exception);
+                    }
+                    writer.append(index);
+                }
+            }
+        } catch (IOException exception) {
+            throw new ArchivingException("Ошибка сшивания архива!", exception);
+        }
+    }
+
+    private static int parseInt(String value, String line) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ошибка! Неверная строка плана: " + line);
+        }
+    }
+}
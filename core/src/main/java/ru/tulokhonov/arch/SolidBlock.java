@@ -0,0 +1,175 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Блок режима solid: служебная запись {@link #PREFIX}N, в которой несколько небольших файлов сжаты одним потоком
+ * DEFLATE. Данные блока начинаются с таблицы членов (сигнатура, количество, затем для каждого члена длина имени,
+ * имя в UTF-8, размер, CRC32 и время изменения в формате DOS), за которой следуют данные членов в том же порядке
+ */
+final class SolidBlock {
+    static final String PREFIX = ArchiveManifest.SERVICE_PREFIX + "solid/";
+    private static final int MAGIC = 0x534f4c31;
+
+    private SolidBlock() {
+    }
+
+    /**
+     * @param record запись центрального каталога
+     * @return да, если запись является блоком режима solid
+     */
+    static boolean isBlock(ZipRecord record) {
+        return ArchiveManifest.isServiceEntry(record) && record.name.startsWith(PREFIX);
+    }
+
+    /**
+     * @param entry запись, прочитанная ZipInputStream или ZipFile
+     * @return да, если запись является блоком режима solid
+     */
+    static boolean isBlock(ZipEntry entry) {
+        return ArchiveManifest.isServiceEntry(entry) && entry.getName().startsWith(PREFIX);
+    }
+
+    /**
+     * @param index порядковый номер блока в архиве
+     * @return имя записи блока
+     */
+    static String name(int index) {
+        return String.format("%s%06d", PREFIX, index);
+    }
+
+    /**
+     * Записывает таблицу членов блока
+     * @param members члены блока с заполненными именем, размером, CRC32 и временем изменения
+     * @param os выходной поток. Поток не закрывается
+     * @throws IOException при ошибке ввода-вывода
+     */
+    static void writeTable(List<ZipRecord> members, OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(members.size());
+        for (ZipRecord member : members) {
+            byte[] name = member.name.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeLong(member.size);
+            out.writeInt((int) member.crc);
+            out.writeInt((int) member.dosTime);
+        }
+        out.flush();
+    }
+
+    /**
+     * Читает таблицу членов блока. После чтения поток указывает на данные первого члена
+     * @param in распакованные данные блока
+     * @return члены блока
+     * @throws IOException если таблица неверная или при ошибке ввода-вывода
+     */
+    static List<ZipRecord> readTable(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC)
+            throw new ZipException("Ошибка! Неверная таблица блока solid");
+        int count = in.readInt();
+        if (count < 0)
+            throw new ZipException("Ошибка! Неверная таблица блока solid");
+        List<ZipRecord> members = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[in.readUnsignedShort()];
+            in.readFully(name);
+            ZipRecord member = new ZipRecord(new String(name, StandardCharsets.UTF_8));
+            member.size = in.readLong();
+            member.crc = in.readInt() & ZipFormat.MAX_32;
+            member.dosTime = in.readInt() & ZipFormat.MAX_32;
+            if (member.size < 0 || member.isDirectory())
+                throw new ZipException("Ошибка! Неверная таблица блока solid: " + member.name);
+            members.add(member);
+        }
+        return members;
+    }
+
+    /**
+     * Извлекает члены блока и проверяет их контрольные суммы. Сжатый размер блока распределяется
+     * между членами пропорционально их размеру
+     * @param in распакованные данные блока
+     * @param validator проверка путей извлечения
+     * @param filter отбор членов по имени
+     * @param ratio отношение сжатого размера блока к несжатому
+     * @param listener получатель событий извлечения
+     * @return количество извлеченных членов
+     * @throws IOException если данные блока неверные или при ошибке ввода-вывода
+     */
+    static int extract(InputStream in, PathValidator validator, Predicate<String> filter, double ratio,
+                       ArchiveListener listener) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        List<ZipRecord> members = readTable(data);
+        ByteBuffer buffer = BufferPool.heap().acquire();
+        int extracted = 0;
+        try {
+            for (ZipRecord member : members) {
+                if (!filter.test(member.name)) {
+                    skip(data, member.size, member.name);
+                    continue;
+                }
+                Path path = validator.resolve(member.name);
+                EntryStatistics statistics = new EntryStatistics(member.name, false);
+                CRC32 crc = new CRC32();
+                try (FileChannel channel = validator.open(path)) {
+                    long remaining = member.size;
+                    long start = System.nanoTime();
+                    while (remaining > 0) {
+                        int length = (int) Math.min(buffer.capacity(), remaining);
+                        data.readFully(buffer.array(), 0, length);
+                        crc.update(buffer.array(), 0, length);
+                        start = statistics.lap(ArchivePhase.INFLATE, start);
+                        buffer.clear().limit(length);
+                        while (buffer.hasRemaining())
+                            channel.write(buffer);
+                        start = statistics.lap(ArchivePhase.WRITE, start);
+                        remaining -= length;
+                    }
+                }
+                if (crc.getValue() != member.crc)
+                    throw new ZipException("Ошибка! Неверная контрольная сумма записи: " + member.name);
+                statistics.size = member.size;
+                statistics.compressedSize = Math.round(member.size * ratio);
+                listener.entryCompleted(statistics);
+                extracted++;
+            }
+        } catch (EOFException e) {
+            throw new ZipException("Ошибка! Неожиданный конец данных блока solid");
+        } finally {
+            BufferPool.heap().release(buffer);
+        }
+        return extracted;
+    }
+
+    /**
+     * @param compressedSize размер сжатых данных блока
+     * @param size размер несжатых данных блока
+     * @return отношение сжатого размера к несжатому или 0, если размеры неизвестны
+     */
+    static double ratio(long compressedSize, long size) {
+        return compressedSize > 0 && size > 0 ? (double) compressedSize / size : 0;
+    }
+
+    private static void skip(DataInputStream in, long count, String name) throws IOException {
+        while (count > 0) {
+            long n = in.skip(count);
+            if (n <= 0) {
+                if (in.read() < 0)
+                    throw new ZipException("Ошибка! Неожиданный конец данных блока solid: " + name);
+                n = 1;
+            }
+            count -= n;
+        }
+    }
+}
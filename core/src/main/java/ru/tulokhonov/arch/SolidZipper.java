@@ -0,0 +1,233 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ArchivingException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Архивация в режиме solid. Файлы меньше {@link #MEMBER_LIMIT} объединяются в блоки ({@link SolidBlock})
+ * примерно по {@link #BLOCK_SIZE}, и каждый блок сжимается одним потоком DEFLATE, поэтому словарь сжатия общий
+ * для соседних файлов, а на каждый файл не тратятся отдельные заголовки и инициализация Deflater.
+ * Чтение файлов и сжатие блоков выполняются параллельно в {@link ArchiveOptions#getThreads()} потоков,
+ * блоки записываются по мере готовности в порядке создания. Большие файлы и папки записываются обычными записями
+ */
+class SolidZipper {
+    static final int MEMBER_LIMIT = 64 * 1024;
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    private final ArchiveOptions options;
+    private final CodecPool codecs = new CodecPool(Integer.MAX_VALUE, BufferPool.heap());
+
+    SolidZipper(ArchiveOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Архивирует файлы и папки в выходной поток
+     * @param files файлы и папки для архивации
+     * @param outputStream выходной поток
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    void zip(Iterator<File> files, OutputStream outputStream) {
+        ArchiveListener listener = options.getListener();
+        ExecutorService pool = options.getThreads() > 1
+                ? Executors.newFixedThreadPool(options.getThreads(), ParallelZipper.daemonThreads("archiver-solid"))
+                : null;
+        int maxPending = (int) Math.max(1, Math.min(4L * options.getThreads(), options.getMemoryBudget() / (3L * BLOCK_SIZE)));
+        Deque<Future<Block>> pending = new ArrayDeque<>();
+        try (ZipWriter writer = new ZipWriter(outputStream);
+             EntryWriter entries = new EntryWriter(writer, codecs);
+             CompressionPolicy policy = new CompressionPolicy(options.getProfile(), codecs)) {
+
+            List<File> members = new ArrayList<>();
+            List<ZipRecord> records = new ArrayList<>();
+            long blockSize = 0;
+            int blocks = 0;
+            while (files.hasNext()) {
+                File file = files.next();
+                ZipRecord record = new ZipRecord(Utils.getZipEntryName(file.toPath(), options));
+                record.dosTime = javaToDosTime(file.lastModified());
+                boolean isFile = file.isFile();
+                long length = isFile ? file.length() : 0;
+                if (isFile && length < MEMBER_LIMIT) {
+                    members.add(file);
+                    records.add(record);
+                    blockSize += length;
+                    if (blockSize >= BLOCK_SIZE) {
+                        submit(pool, pending, SolidBlock.name(blocks++), members, records);
+                        members = new ArrayList<>();
+                        records = new ArrayList<>();
+                        blockSize = 0;
+                    }
+                } else if (isFile) {
+                    EntryStatistics statistics = new EntryStatistics(record.name, false);
+                    entries.writeFile(file, record, policy.decide(file), statistics);
+                    statistics.size = record.size;
+                    statistics.compressedSize = record.compressedSize;
+                    listener.entryCompleted(statistics);
+                } else if (file.isDirectory()) {
+                    record.method = STORED;
+                    writer.putLocalHeader(record);
+                    writer.closeEntry(record);
+                    listener.entryCompleted(new EntryStatistics(record.name, true));
+                }
+                // Готовые блоки записываются сразу, а при превышении ограничения памяти - с ожиданием
+                while (!pending.isEmpty() && (pending.peekFirst().isDone() || pending.size() > maxPending))
+                    writeBlock(writer, await(pending.pollFirst()), listener);
+            }
+            if (!members.isEmpty())
+                submit(pool, pending, SolidBlock.name(blocks), members, records);
+            while (!pending.isEmpty())
+                writeBlock(writer, await(pending.pollFirst()), listener);
+        } catch (IOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception);
+        } catch (UncheckedIOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception.getCause());
+        } finally {
+            for (Future<Block> future : pending)
+                future.cancel(true);
+            if (pool != null)
+                pool.shutdownNow();
+            // Экземпляры, которые еще сжимают блоки, освобождаются при возврате в закрытый пул
+            codecs.close();
+        }
+    }
+
+    private void submit(ExecutorService pool, Deque<Future<Block>> pending, String name, List<File> files,
+                        List<ZipRecord> members) {
+        Callable<Block> task = () -> compress(name, files, members);
+        if (pool != null) {
+            pending.addLast(pool.submit(task));
+            return;
+        }
+        FutureTask<Block> future = new FutureTask<>(task);
+        future.run();
+        pending.addLast(future);
+    }
+
+    /**
+     * Читает файлы блока и сжимает таблицу членов и их данные одним потоком DEFLATE
+     */
+    private Block compress(String name, List<File> files, List<ZipRecord> members) throws IOException {
+        Block block = new Block(name);
+        ByteArrayOutputStream data = new ByteArrayOutputStream(BLOCK_SIZE + MEMBER_LIMIT);
+        for (int i = 0; i < files.size(); i++) {
+            ZipRecord member = members.get(i);
+            EntryStatistics statistics = new EntryStatistics(member.name, false);
+            long start = System.nanoTime();
+            // Размер берется по прочитанным данным: файл мог измениться после обхода директорий
+            byte[] bytes = Files.readAllBytes(files.get(i).toPath());
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            statistics.since(ArchivePhase.READ, start);
+            member.size = bytes.length;
+            member.crc = crc.getValue();
+            statistics.size = bytes.length;
+            block.statistics.add(statistics);
+            data.write(bytes);
+        }
+        block.members.addAll(members);
+
+        long start = System.nanoTime();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(data.size() + 64 * block.members.size());
+        SolidBlock.writeTable(block.members, raw);
+        data.writeTo(raw);
+        byte[] bytes = raw.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        block.crc = crc.getValue();
+        block.size = bytes.length;
+
+        int level = options.getProfile().level();
+        Deflater deflater = codecs.deflater(level, Deflater.DEFAULT_STRATEGY);
+        ByteBuffer output = codecs.buffers().acquire();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            while (!deflater.finished())
+                compressed.write(output.array(), 0, deflater.deflate(output.array()));
+            // Несжимаемый блок хранится без сжатия
+            block.method = compressed.size() < bytes.length ? DEFLATED : STORED;
+            block.data = block.method == DEFLATED ? compressed.toByteArray() : bytes;
+        } finally {
+            codecs.release(deflater, level, Deflater.DEFAULT_STRATEGY);
+            codecs.buffers().release(output);
+        }
+        block.nanos = System.nanoTime() - start;
+        return block;
+    }
+
+    /**
+     * Записывает блок и сообщает о каждом его члене. Сжатый размер и время сжатия блока распределяются
+     * между членами пропорционально их размеру
+     */
+    private static void writeBlock(ZipWriter writer, Block block, ArchiveListener listener) throws IOException {
+        long start = System.nanoTime();
+        ZipRecord record = new ZipRecord(block.name);
+        record.service = true;
+        record.method = block.method;
+        record.dosTime = javaToDosTime(System.currentTimeMillis());
+        record.crc = block.crc;
+        record.size = block.size;
+        record.compressedSize = block.data.length;
+        writer.putLocalHeader(record);
+        writer.write(block.data, 0, block.data.length);
+        writer.closeEntry(record);
+        long writeNanos = System.nanoTime() - start;
+
+        double ratio = SolidBlock.ratio(record.compressedSize, record.size);
+        for (EntryStatistics statistics : block.statistics) {
+            double share = block.size == 0 ? 0 : (double) statistics.size / block.size;
+            statistics.compressedSize = Math.round(statistics.size * ratio);
+            statistics.add(ArchivePhase.DEFLATE, (long) (block.nanos * share));
+            statistics.add(ArchivePhase.WRITE, (long) (writeNanos * share));
+            listener.entryCompleted(statistics);
+        }
+    }
+
+    private static Block await(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Архивация прервана");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Сжатый блок, готовый к записи
+     */
+    private static class Block {
+        final String name;
+        final List<ZipRecord> members = new ArrayList<>();
+        final List<EntryStatistics> statistics = new ArrayList<>();
+        int method;
+        long crc;
+        long size;
+        byte[] data;
+        long nanos;
+
+        Block(String name) {
+            this.name = name;
+        }
+    }
+}
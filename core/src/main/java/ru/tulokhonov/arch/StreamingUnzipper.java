@@ -0,0 +1,209 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Конвейерное извлечение из потока без произвольного доступа. Вызывающий поток читает и распаковывает
+ * записи, заполняя буферы из пула, а пул потоков записи пишет их в файлы, поэтому задержки файловой системы
+ * не останавливают распаковку. Объем распакованных, но не записанных данных ограничен
+ * {@link ArchiveOptions#getMemoryBudget()}. Записи с одинаковым именем пишутся по очереди в порядке архива,
+ * поэтому, как и при последовательном извлечении, остается последняя. Объект рассчитан на однократное использование
+ */
+class StreamingUnzipper {
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    /** Через столько записей из таблицы задач записи удаляются завершенные */
+    private static final int PRUNE_INTERVAL = 1024;
+
+    private final ArchiveOptions options;
+    private final BufferPool buffers = BufferPool.heap();
+    private final Semaphore budget;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    StreamingUnzipper(ArchiveOptions options) {
+        this.options = options;
+        this.budget = new Semaphore((int) Math.max(2, Math.min(Integer.MAX_VALUE, options.getMemoryBudget() / buffers.bufferSize())));
+    }
+
+    /**
+     * Извлекает данные Zip из входного потока в указанный путь
+     * @param is входной поток
+     * @param path путь для разархивации
+     * @throws IllegalArgumentException если контент входного потока не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    void unZip(InputStream is, Path path) {
+        ArchiveListener listener = options.getListener();
+        ExecutorService pool = Executors.newFixedThreadPool(options.getThreads(), ParallelZipper.daemonThreads("archiver-write"));
+        BlockingQueue<ByteBuffer> current = null;
+        boolean completed = false;
+        try (ZipInputStream zis = new ZipInputStream(is)) {
+            PathValidator validator = new PathValidator(path);
+            Map<Path, Future<?>> writers = new HashMap<>();
+            int entries = 0;
+            ZipEntry zipEntry = zis.getNextEntry();
+            if (zipEntry == null)
+                throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip");
+
+            for (; zipEntry != null; zipEntry = zis.getNextEntry()) {
+                checkError();
+                // Члены блока solid небольшие и записываются в потоке чтения
+                if (SolidBlock.isBlock(zipEntry))
+                    SolidBlock.extract(zis, validator, name -> true,
+                            SolidBlock.ratio(zipEntry.getCompressedSize(), zipEntry.getSize()), listener);
+                if (ArchiveManifest.isServiceEntry(zipEntry))
+                    continue;
+                Path newPath = validator.resolve(zipEntry.getName());
+                EntryStatistics statistics = new EntryStatistics(zipEntry.getName(), zipEntry.isDirectory());
+                if (zipEntry.isDirectory()) {
+                    validator.createDirectories(newPath);
+                    listener.entryCompleted(statistics);
+                    continue;
+                }
+
+                // Данные записи передаются потоку записи по мере распаковки
+                current = new LinkedBlockingQueue<>();
+                BlockingQueue<ByteBuffer> queue = current;
+                // Завершенные задачи больше не нужны для упорядочивания, таблица не растет с числом записей
+                if (++entries % PRUNE_INTERVAL == 0)
+                    writers.values().removeIf(Future::isDone);
+                Future<?> previous = writers.get(newPath);
+                writers.put(newPath, pool.submit(() -> write(validator, newPath, previous, queue, statistics, listener)));
+                long start = System.nanoTime();
+                while (true) {
+                    acquireBudget();
+                    ByteBuffer buffer = buffers.acquire();
+                    int length = Utils.readFully(zis, buffer.array());
+                    if (length == 0) {
+                        buffers.release(buffer);
+                        budget.release();
+                        break;
+                    }
+                    buffer.limit(length);
+                    statistics.size += length;
+                    queue.add(buffer);
+                }
+                statistics.since(ArchivePhase.INFLATE, start);
+                statistics.compressedSize = Math.max(0, zipEntry.getCompressedSize());
+                queue.add(END);
+                current = null;
+            }
+            completed = true;
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка извлечения данных!", exception);
+        } finally {
+            if (current != null)
+                current.add(END);
+            if (completed)
+                awaitWriters(pool);
+            else
+                pool.shutdownNow();
+        }
+        checkError();
+    }
+
+    /**
+     * Поток записи: дожидается записи предыдущей записи с тем же путем и пишет буферы записи в файл
+     * до маркера конца. После ошибки оставшиеся буферы только возвращаются в пул, чтобы поток чтения не остановился
+     */
+    private void write(PathValidator validator, Path newPath, Future<?> previous, BlockingQueue<ByteBuffer> queue,
+                       EntryStatistics statistics, ArchiveListener listener) {
+        FileChannel channel = null;
+        try {
+            // Предыдущая задача передана в пул раньше, поэтому она уже выполняется или выполнена
+            if (previous != null)
+                previous.get();
+            long start = System.nanoTime();
+            if (error.get() == null)
+                channel = validator.open(newPath);
+            ByteBuffer buffer;
+            while ((buffer = queue.take()) != END) {
+                try {
+                    if (channel != null)
+                        while (buffer.hasRemaining())
+                            channel.write(buffer);
+                } finally {
+                    buffers.release(buffer);
+                    budget.release();
+                }
+            }
+            if (channel != null) {
+                channel.close();
+                statistics.since(ArchivePhase.WRITE, start);
+                listener.entryCompleted(statistics);
+            }
+        } catch (IOException | RuntimeException e) {
+            error.compareAndSet(null, e);
+            drain(queue);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            error.compareAndSet(null, e.getCause());
+            drain(queue);
+        } finally {
+            if (channel != null && channel.isOpen())
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Ошибка уже сохранена
+                }
+        }
+    }
+
+    private void drain(BlockingQueue<ByteBuffer> queue) {
+        try {
+            ByteBuffer buffer;
+            while ((buffer = queue.take()) != END) {
+                buffers.release(buffer);
+                budget.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acquireBudget() throws IOException {
+        try {
+            budget.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Извлечение прервано");
+        }
+    }
+
+    private void awaitWriters(ExecutorService pool) {
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS))
+                if (error.get() != null)
+                    pool.shutdownNow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+            throw new ExtractionException("Ошибка извлечения данных!", new InterruptedIOException("Извлечение прервано"));
+        }
+    }
+
+    private void checkError() {
+        Throwable e = error.get();
+        if (e == null)
+            return;
+        if (e instanceof IOException)
+            throw new ExtractionException("Ошибка извлечения данных!", e);
+        if (e instanceof Error)
+            throw (Error) e;
+        throw (RuntimeException) e;
+    }
+}
@@ -0,0 +1,736 @@
+package ru.tulokhonov.arch;
+
+import ru.tulokhonov.arch.exceptions.ArchivingException;
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static java.util.stream.Collectors.toList;
+
+public class Utils {
+    /** Файлы не меньше этого размера при подсчете контрольной суммы отображаются в память */
+    static final long MAPPED_CHECKSUM_THRESHOLD = 4L * 1024 * 1024;
+    static final long MAPPED_REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Возвращает список файлов и директорий как объекты File по указанному пути
+     * @param path путь к директории
+     * @return список файлов и директорий
+     * @throws RuntimeException если произошла I/O ошибка доступа по указанному пути
+     */
+    public static List<File> getAllFilesInDir(String path) {
+        try (Stream<File> files = streamAllFilesInDir(path)) {
+            return files.collect(toList());
+        }
+    }
+
+    /**
+     * Возвращает ленивый поток файлов и директорий по указанному пути. Директория обходится по мере чтения потока,
+     * поэтому расход памяти не зависит от количества файлов. Поток необходимо закрыть
+     * @param path путь к директории
+     * @return поток файлов и директорий
+     * @throws RuntimeException если произошла I/O ошибка доступа по указанному пути
+     */
+    public static Stream<File> streamAllFilesInDir(String path) {
+        try {
+            return Files
+                    .walk(Paths.get(path))
+                    .map(Path::toFile);
+        } catch (IOException exception) {
+            throw new RuntimeException("Ошибка. Невозможно вывести список файлов и папок для архивации", exception);
+        }
+    }
+
+    /**
+     * Ищет файлы и папки по указанным путям. Проверят существуют ли они.
+     * @param paths пути к файлам и папкам
+     * @return список файлов и папок по указанным путям в виде объектов File
+     * @throws IllegalArgumentException если файл или папка не существуют или путь к файлу или папке содержит запрещенные символы
+     */
+    public static List<File> getFiles(String[] paths) {
+        try (Stream<File> files = streamFiles(paths)) {
+            return files.collect(toList());
+        }
+    }
+
+    /**
+     * Ищет файлы и папки по указанным путям и возвращает их в виде ленивого потока. Существование и имена путей
+     * проверяются сразу, а содержимое директорий перечисляется по мере чтения потока. Поток необходимо закрыть
+     * @param paths пути к файлам и папкам
+     * @return поток файлов и папок по указанным путям в виде объектов File
+     * @throws IllegalArgumentException если файл или папка не существуют или путь к файлу или папке содержит запрещенные символы
+     */
+    public static Stream<File> streamFiles(String[] paths) {
+        return streamFiles(paths, new ArchiveOptions());
+    }
+
+    /**
+     * Ищет файлы и папки по указанным путям и возвращает их в виде ленивого потока. Если задано больше одного
+     * потока обхода, директории обходятся параллельно, а атрибуты файлов читаются один раз. Поток необходимо закрыть
+     * @param paths пути к файлам и папкам
+     * @param options параметры обхода
+     * @return поток файлов и папок по указанным путям в виде объектов File
+     * @throws IllegalArgumentException если файл или папка не существуют или путь к файлу или папке содержит запрещенные символы
+     */
+    public static Stream<File> streamFiles(String[] paths, ArchiveOptions options) {
+        List<Supplier<Stream<File>>> sources = new ArrayList<>(paths.length);
+        for (String path : paths) {
+            File file = resolve(path, options);
+            if (!file.exists())
+                throw new IllegalArgumentException(
+                        String.format("Ошибка! Файл или директория по имени \"%s\" не существует. Пожалуйста, проверьте имя и повторите снова",
+                                file.getName()));
+            if (pathContainsDirTraversal(file.toPath()))
+                throw new IllegalArgumentException(
+                        String.format("Ошибка! Запрещенное имя папки или директории \"%s\"", file.getName()));
+            sources.add(() -> {
+                if (!file.isDirectory())
+                    return Stream.of(file);
+                if (options.getWalkerThreads() > 1)
+                    return new ParallelWalker(options.getWalkerThreads(), options.isSorted()).walk(file.toPath());
+                return streamAllFilesInDir(file.getPath());
+            });
+        }
+        return concat(sources);
+    }
+
+    /**
+     * Объединяет потоки файлов: каждый поток открывается, когда прочитан предыдущий, и закрывается после чтения.
+     * В отличие от flatMap элементы запрашиваются у текущего потока по одному (flatMap в Java 9+ при чтении
+     * через iterator() читает вложенный поток целиком), поэтому обход директории не накапливается в памяти,
+     * а ограниченная очередь {@link ParallelWalker} сдерживает обход. Закрытие результата закрывает текущий поток
+     * @param sources источники потоков в порядке чтения
+     * @return объединенный поток
+     */
+    static Stream<File> concat(List<Supplier<Stream<File>>> sources) {
+        ConcatenatedIterator iterator = new ConcatenatedIterator(sources.iterator());
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Итератор по потокам источников, открываемым по очереди
+     */
+    private static final class ConcatenatedIterator implements Iterator<File> {
+        private final Iterator<Supplier<Stream<File>>> sources;
+        private Stream<File> current;
+        private Iterator<File> files = Collections.emptyIterator();
+        private boolean closed;
+
+        ConcatenatedIterator(Iterator<Supplier<Stream<File>>> sources) {
+            this.sources = sources;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!files.hasNext()) {
+                closeCurrent();
+                if (closed || !sources.hasNext())
+                    return false;
+                current = sources.next().get();
+                files = current.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public File next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return files.next();
+        }
+
+        void close() {
+            closed = true;
+            closeCurrent();
+        }
+
+        private void closeCurrent() {
+            Stream<File> stream = current;
+            current = null;
+            files = Collections.emptyIterator();
+            if (stream != null)
+                stream.close();
+        }
+    }
+
+    static File resolve(String path, ArchiveOptions options) {
+        Path directory = options.getWorkingDirectory();
+        return directory == null ? new File(path) : directory.resolve(path).toFile();
+    }
+
+    /**
+     * Генерирует архив в виде выходного потока в формате ZIP и пишет результат в outputStream
+     * @param files список файлов и папок для архивации
+     * @param outputStream выходной поток
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public static void zip(List<File> files, OutputStream outputStream) {
+        zip(files, outputStream, new ArchiveOptions());
+    }
+
+    /**
+     * Генерирует архив в формате ZIP с указанными параметрами и пишет результат в outputStream.
+     * Способ сжатия каждого файла выбирается политикой сжатия согласно профилю.
+     * Если задано больше одного потока, файлы сжимаются параллельно. Если задан предыдущий архив,
+     * архивация выполняется инкрементально, если включен режим solid - небольшие файлы сжимаются блоками
+     * @param files список файлов и папок для архивации
+     * @param outputStream выходной поток
+     * @param options параметры архивации
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public static void zip(List<File> files, OutputStream outputStream, ArchiveOptions options) {
+        zip(files.stream(), outputStream, options);
+    }
+
+    /**
+     * Генерирует архив в формате ZIP из потока файлов и папок. Файлы архивируются по мере поступления из потока,
+     * поэтому сжатие начинается до окончания обхода директорий. Поток не закрывается
+     * @param files поток файлов и папок для архивации
+     * @param outputStream выходной поток
+     * @param options параметры архивации
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public static void zip(Stream<File> files, OutputStream outputStream, ArchiveOptions options) {
+        ArchiveListener listener = options.getListener();
+        Iterator<File> enumerated = enumerated(files.iterator(), listener);
+        if (options.getBaseArchive() != null && options.isSolid())
+            throw new IllegalArgumentException("Ошибка! Инкрементальная архивация не поддерживает режим solid");
+        if (options.isSolid()) {
+            new SolidZipper(options).zip(enumerated, outputStream);
+            return;
+        }
+        if (options.getBaseArchive() != null) {
+            new IncrementalZipper(options).zip(enumerated, options.getBaseArchive(), outputStream);
+            return;
+        }
+        if (options.getThreads() > 1) {
+            new ParallelZipper(options).zip(enumerated, outputStream);
+            return;
+        }
+        ByteBuffer buffer = BufferPool.heap().acquire();
+        try (BufferedOutputStream bos = new BufferedOutputStream(outputStream);
+             TunableZipOutputStream zos = new TunableZipOutputStream(bos);
+             CompressionPolicy policy = new CompressionPolicy(options.getProfile())) {
+
+            byte[] bytes = buffer.array();
+            while (enumerated.hasNext()) {
+                File file = enumerated.next();
+                if (file.isFile())
+                    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                        ZipEntry zipEntry = new ZipEntry(getZipEntryName(file.toPath(), options));
+                        EntryStatistics statistics = new EntryStatistics(zipEntry.getName(), false);
+                        CompressionPolicy.Decision decision = policy.decide(file);
+                        if (decision.isStored()) {
+                            // Для записей без сжатия контрольная сумма и размер должны быть известны до заголовка
+                            long start = System.nanoTime();
+                            CRC32 crc = new CRC32();
+                            long size = checksum(file, crc);
+                            statistics.since(ArchivePhase.READ, start);
+                            zipEntry.setMethod(ZipEntry.STORED);
+                            zipEntry.setSize(size);
+                            zipEntry.setCompressedSize(size);
+                            zipEntry.setCrc(crc.getValue());
+                        } else {
+                            zos.setLevel(decision.getLevel());
+                            zos.setStrategy(decision.getStrategy());
+                        }
+                        zos.putNextEntry(zipEntry);
+                        // Для сжимаемых записей время записи в поток входит во время сжатия
+                        ArchivePhase phase = decision.isStored() ? ArchivePhase.WRITE : ArchivePhase.DEFLATE;
+                        int bytesRead;
+                        long start = System.nanoTime();
+                        while ((bytesRead = channel.read(buffer)) >= 0) {
+                            start = statistics.lap(ArchivePhase.READ, start);
+                            zos.write(bytes, 0, bytesRead);
+                            start = statistics.lap(phase, start);
+                            buffer.clear();
+                        }
+                        zos.closeEntry();
+                        statistics.since(phase, start);
+                        statistics.size = zipEntry.getSize();
+                        statistics.compressedSize = zipEntry.getCompressedSize();
+                        listener.entryCompleted(statistics);
+                    }
+                else if (file.isDirectory()) {
+                    zos.putNextEntry(new ZipEntry(getZipEntryName(file.toPath(), options)));
+                    listener.entryCompleted(new EntryStatistics(getZipEntryName(file.toPath(), options), true));
+                }
+            }
+        } catch (IOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception);
+        } catch (UncheckedIOException exception) {
+            throw new ArchivingException("Ошибка создания архива!", exception.getCause());
+        } finally {
+            BufferPool.heap().release(buffer);
+        }
+    }
+
+    /**
+     * Сообщает получателю событий время ожидания каждого файла от обхода директорий
+     */
+    static Iterator<File> enumerated(Iterator<File> files, ArchiveListener listener) {
+        return new Iterator<File>() {
+            private long nanos;
+
+            @Override
+            public boolean hasNext() {
+                long start = System.nanoTime();
+                boolean hasNext = files.hasNext();
+                nanos += System.nanoTime() - start;
+                return hasNext;
+            }
+
+            @Override
+            public File next() {
+                long start = System.nanoTime();
+                File file = files.next();
+                listener.entryEnumerated(nanos + System.nanoTime() - start);
+                nanos = 0;
+                return file;
+            }
+        };
+    }
+
+    /**
+     * ZipOutputStream с возможностью менять стратегию сжатия между записями
+     */
+    private static class TunableZipOutputStream extends ZipOutputStream {
+        TunableZipOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        void setStrategy(int strategy) {
+            def.setStrategy(strategy);
+        }
+    }
+
+    /**
+     * Считает контрольную сумму CRC32 содержимого файла. Большие файлы отображаются в память частями
+     * по {@link #MAPPED_REGION_SIZE}, небольшие читаются через прямой буфер из пула
+     * @param file файл
+     * @param crc контрольная сумма, в которую добавляется содержимое файла
+     * @return размер прочитанных данных в байтах
+     * @throws IOException при ошибке чтения файла
+     */
+    static long checksum(File file, CRC32 crc) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length >= MAPPED_CHECKSUM_THRESHOLD) {
+                for (long position = 0; position < length; position += MAPPED_REGION_SIZE)
+                    crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, length - position)));
+                return length;
+            }
+            long size = 0;
+            ByteBuffer buffer = BufferPool.direct().acquire();
+            try {
+                int bytesRead;
+                while ((bytesRead = channel.read(buffer)) >= 0) {
+                    buffer.flip();
+                    crc.update(buffer);
+                    buffer.clear();
+                    size += bytesRead;
+                }
+            } finally {
+                BufferPool.direct().release(buffer);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Читает из потока данные до заполнения буфера или до конца потока
+     * @param is входной поток
+     * @param buffer буфер
+     * @return количество прочитанных байт
+     * @throws IOException при ошибке чтения
+     */
+    static int readFully(InputStream is, byte[] buffer) throws IOException {
+        int total = 0;
+        int bytesRead;
+        while (total < buffer.length && (bytesRead = is.read(buffer, total, buffer.length - total)) >= 0)
+            total += bytesRead;
+        return total;
+    }
+
+    /**
+     * Читает из канала данные до заполнения буфера или до конца канала
+     * @param channel канал
+     * @param buffer буфер, данные пишутся начиная с текущей позиции буфера
+     * @return количество прочитанных байт
+     * @throws IOException при ошибке чтения
+     */
+    static int readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        int bytesRead;
+        while (buffer.hasRemaining() && (bytesRead = channel.read(buffer)) >= 0)
+            total += bytesRead;
+        return total;
+    }
+
+    /**
+     * Извлекает данные Zip из входного потока в указанный путь
+     * @param is входной поток
+     * @param path путь для разархивации
+     * @throws IllegalArgumentException если контент входного потока inputStream не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static void unZip(InputStream is, Path path) {
+        unZip(is, path, new ArchiveOptions());
+    }
+
+    /**
+     * Извлекает данные Zip из входного потока в указанный путь. Если задано больше одного потока, распакованные данные
+     * записываются в файлы пулом потоков параллельно с распаковкой следующих записей.
+     * События извлечения передаются получателю из параметров
+     * @param is входной поток
+     * @param path путь для разархивации
+     * @param options параметры извлечения
+     * @throws IllegalArgumentException если контент входного потока inputStream не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static void unZip(InputStream is, Path path, ArchiveOptions options) {
+        if (options.getThreads() > 1) {
+            new StreamingUnzipper(options).unZip(is, path);
+            return;
+        }
+        ArchiveListener listener = options.getListener();
+        ByteBuffer pooled = BufferPool.heap().acquire();
+        try (ZipInputStream zis = new ZipInputStream(is)) {
+            PathValidator validator = new PathValidator(path);
+            byte[] buffer = pooled.array();
+            ZipEntry zipEntry = zis.getNextEntry();
+
+            if (zipEntry == null)
+                throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip");
+
+            while (zipEntry != null) {
+                if (SolidBlock.isBlock(zipEntry))
+                    SolidBlock.extract(zis, validator, name -> true,
+                            SolidBlock.ratio(zipEntry.getCompressedSize(), zipEntry.getSize()), listener);
+                if (ArchiveManifest.isServiceEntry(zipEntry)) {
+                    zipEntry = zis.getNextEntry();
+                    continue;
+                }
+                Path newPath = validator.resolve(zipEntry.getName());
+
+                EntryStatistics statistics = new EntryStatistics(zipEntry.getName(), zipEntry.isDirectory());
+                if (zipEntry.isDirectory()) {
+                    validator.createDirectories(newPath);
+                } else {
+                    try (FileChannel channel = validator.open(newPath)) {
+                        // Чтение сжатых данных из потока входит во время распаковки
+                        int bytesRead;
+                        long start = System.nanoTime();
+                        while ((bytesRead = zis.read(buffer)) >= 0) {
+                            start = statistics.lap(ArchivePhase.INFLATE, start);
+                            pooled.clear().limit(bytesRead);
+                            while (pooled.hasRemaining())
+                                channel.write(pooled);
+                            start = statistics.lap(ArchivePhase.WRITE, start);
+                            statistics.size += bytesRead;
+                        }
+                    } catch (IOException exception) {
+                        throw new ExtractionException("Ошибка извлечения данных!", exception);
+                    }
+                    // Размер сжатых данных известен после чтения записи, если он не указан в локальном заголовке
+                    statistics.compressedSize = Math.max(0, zipEntry.getCompressedSize());
+                }
+                listener.entryCompleted(statistics);
+                zipEntry = zis.getNextEntry();
+            }
+        }
+        catch (IOException exception) {
+            throw new ExtractionException("Ошибка извлечения данных!", exception);
+        } finally {
+            BufferPool.heap().release(pooled);
+        }
+    }
+
+    /**
+     * Проверяет запись из Zip файла на наличие запрещенных символов перехода директорий "..", которые могут привести к извлечению данных вне указанного пути
+     * @see "https://snyk.io/research/zip-slip-vulnerability"
+     *
+     * @param zipEntry ZipEntry запись из файла Zip
+     * @param target путь для извлечения
+     * @throws IOException если в результате извлечения файл мог быть записан вне пути для извлечения
+     */
+    static void slipProtect(ZipEntry zipEntry, Path target) throws IOException {
+        slipProtect(zipEntry.getName(), target);
+    }
+
+    /**
+     * Проверяет имя записи из Zip файла на наличие запрещенных символов перехода директорий ".."
+     * @param entryName имя записи
+     * @param target путь для извлечения
+     * @throws IOException если в результате извлечения файл мог быть записан вне пути для извлечения
+     */
+    static void slipProtect(String entryName, Path target) throws IOException {
+        String canonicalDestinationDirPath = target.toFile().getCanonicalPath();
+        File destinationFile = new File(target.toFile(), entryName);
+        String canonicalDestinationFile = destinationFile.getCanonicalPath();
+
+        if (!canonicalDestinationFile.startsWith(canonicalDestinationDirPath + File.separator)) {
+            throw new IOException("Ошибка! Неверная запись в файле Zip: " + entryName);
+        }
+    }
+
+    /**
+     * Извлекает данные Zip из входного потока в текущий путь
+     * @param is входной поток
+     */
+    public static void unZip(InputStream is) {
+        unZip(is, Paths.get("./"));
+    }
+
+    /**
+     * Извлекает данные Zip из входного потока в текущий путь
+     * @param is входной поток
+     * @param options параметры извлечения
+     */
+    public static void unZip(InputStream is, ArchiveOptions options) {
+        unZip(is, Paths.get("./"), options);
+    }
+
+    /**
+     * Извлекает данные из Zip файла в указанный путь, распаковывая записи параллельно
+     * @param archive путь к Zip файлу
+     * @param path путь для разархивации
+     * @param options параметры извлечения
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static void unZip(Path archive, Path path, ArchiveOptions options) {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            unZip(channel, path, options);
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка извлечения данных!", exception);
+        }
+    }
+
+    /**
+     * Извлекает данные из канала Zip файла в указанный путь, распаковывая записи параллельно
+     * @param channel канал Zip файла с произвольным доступом. Канал не закрывается
+     * @param path путь для разархивации
+     * @param options параметры извлечения
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static void unZip(FileChannel channel, Path path, ArchiveOptions options) {
+        new ParallelUnzipper(options).unZip(channel, path);
+    }
+
+    /**
+     * Извлекает из Zip файла записи с указанными именами или соответствующие шаблонам glob. Читаются только
+     * центральный каталог и данные выбранных записей, поэтому время не зависит от размера архива
+     * @param archive путь к Zip файлу
+     * @param path путь для разархивации
+     * @param patterns имена записей (имя папки выбирает все ее записи) и шаблоны glob, например {@code logs/**.log}
+     * @param options параметры извлечения
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом, шаблон неверный или нет выбранных записей
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static void unZip(Path archive, Path path, Collection<String> patterns, ArchiveOptions options) {
+        EntryMatcher matcher = new EntryMatcher(patterns);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            new ParallelUnzipper(options).unZip(channel, path, matcher);
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка извлечения данных!", exception);
+        }
+    }
+
+    /**
+     * Проверяет целостность Zip файла без извлечения на диск: распаковывает все записи в памяти параллельно
+     * и сравнивает их размер и CRC32 с центральным каталогом, а при заданной исходной папке - с ее файлами
+     * @param archive путь к Zip файлу
+     * @param source исходная папка для сравнения по размеру и CRC32 или null
+     * @param options параметры проверки: количество потоков и получатель событий
+     * @return отчет с первыми ошибками
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static VerifyReport verify(Path archive, Path source, ArchiveOptions options) {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            return new ArchiveVerifier(options).verify(channel, source);
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка проверки архива!", exception);
+        }
+    }
+
+    /**
+     * Проверяет целостность Zip файла из потока без извлечения на диск. Записи проверяются последовательно,
+     * размер и CRC32 сравниваются с локальными заголовками и дескрипторами данных
+     * @param is входной поток
+     * @param source исходная папка для сравнения по размеру и CRC32 или null
+     * @param options параметры проверки
+     * @return отчет с первыми ошибками
+     * @throws IllegalArgumentException если контент входного потока не является Zip файлом или файл пуст
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static VerifyReport verify(InputStream is, Path source, ArchiveOptions options) {
+        return new ArchiveVerifier(options).verify(is, source);
+    }
+
+    /**
+     * Объединяет Zip файлы в один без распаковки и повторного сжатия: записи копируются сжатыми данными
+     * с прежними контрольными суммами и размерами, затем записывается новый центральный каталог.
+     * Одноименные записи выбираются согласно {@link ArchiveOptions#getDuplicatePolicy()}
+     * @param archives пути к исходным Zip файлам в порядке объединения
+     * @param outputStream выходной поток
+     * @param include имена и шаблоны glob включаемых записей, пустой список - все записи
+     * @param exclude имена и шаблоны glob исключаемых записей
+     * @param options параметры объединения
+     * @throws IllegalArgumentException если исходный файл не является Zip файлом, шаблон неверный или
+     *                                  при правиле {@link DuplicatePolicy#FAIL} найдены повторяющиеся записи
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public static void merge(List<Path> archives, OutputStream outputStream, Collection<String> include,
+                             Collection<String> exclude, ArchiveOptions options) {
+        new ArchiveMerger(include, exclude, options).merge(archives, outputStream);
+    }
+
+    /**
+     * Делит файлы на части примерно равного объема для архивации по частям. Каждая часть - непрерывный отрезок
+     * списка, части архивируются независимо (например, в разных процессах) и сшиваются {@link #stitch(List, OutputStream)}
+     * @param files файлы и папки для архивации, например из {@link #getFiles(String[])}
+     * @param count количество частей
+     * @return части в порядке списка, некоторые могут быть пустыми
+     * @throws IllegalArgumentException если количество частей не положительное
+     */
+    public static List<List<File>> planShards(List<File> files, int count) {
+        return Shards.plan(files, count);
+    }
+
+    /**
+     * Сшивает Zip файлы частей в один без повторного сжатия: данные записей копируются одним блоком на часть,
+     * смещения записей пересчитываются в общем центральном каталоге
+     * @param parts пути к Zip файлам частей в порядке плана
+     * @param outputStream выходной поток
+     * @throws IllegalArgumentException если часть не является Zip файлом
+     * @throws ArchivingException при ошибке ввода-вывода
+     */
+    public static void stitch(List<Path> parts, OutputStream outputStream) {
+        Shards.stitch(parts, outputStream);
+    }
+
+    /**
+     * Возвращает список записей Zip файла по центральному каталогу без чтения данных записей.
+     * Служебные записи архиватора не включаются, вместо блоков режима solid возвращаются их члены
+     * (читается только таблица в начале блока)
+     * @param archive путь к Zip файлу
+     * @return записи архива в порядке центрального каталога
+     * @throws IllegalArgumentException если файл не является правильным Zip файлом
+     * @throws ExtractionException при возникновении ошибки ввода-вывода
+     */
+    public static List<ZipRecord> list(Path archive) {
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            ZipIndex index;
+            try {
+                index = ZipIndex.read(channel);
+            } catch (IOException exception) {
+                throw new IllegalArgumentException("Ошибка! Неверный или пустой файл Zip", exception);
+            }
+            List<ZipRecord> records = new ArrayList<>();
+            for (ZipRecord record : index.records()) {
+                if (SolidBlock.isBlock(record))
+                    try (DataInputStream is = new DataInputStream(new BufferedInputStream(index.open(record)))) {
+                        double ratio = SolidBlock.ratio(record.compressedSize, record.size);
+                        for (ZipRecord member : SolidBlock.readTable(is)) {
+                            member.method = record.method;
+                            member.compressedSize = Math.round(member.size * ratio);
+                            records.add(member);
+                        }
+                    }
+                else if (!ArchiveManifest.isServiceEntry(record))
+                    records.add(record);
+            }
+            return records;
+        } catch (IOException exception) {
+            throw new ExtractionException("Ошибка чтения архива!", exception);
+        }
+    }
+
+    /**
+     * Проверяет, поддерживает ли канал произвольный доступ (обычный файл, а не канал или терминал)
+     * @param channel канал
+     * @return да, если канал поддерживает произвольный доступ
+     */
+    static boolean isSeekable(FileChannel channel) {
+        try {
+            return channel.size() > 0 && channel.position() >= 0;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Считает размер всех файлов в папке
+     * @param folder путь к папке
+     * @return размер файлов в папке в байтах
+     * @throws IOException при возникновении ошибки ввода-вывода при обращении к папке
+     */
+    static long getFolderSize(Path folder) throws IOException {
+        return new ParallelWalker(Runtime.getRuntime().availableProcessors(), false).size(folder);
+    }
+
+    /**
+     * Проверяет содержит ли путь знаки перехода вверх ".."
+     * @param path путь для проверки
+     * @return да, если содержит, иначе возвращает false
+     */
+    static boolean pathContainsDirTraversal(Path path) {
+        for (int i = 0; i < path.getNameCount(); i++) {
+            if (path.getName(i).toString().equals("..")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Генерирует имя для записей в Zip файле (ZipEntries)
+     * @param path путь к файлу или папке
+     * @return имя для записи Zip файла
+     */
+    static String getZipEntryName(Path path) {
+        return getZipEntryName(path, path.toFile().isDirectory());
+    }
+
+    /**
+     * Генерирует имя записи относительно рабочей папки из параметров архивации
+     * @param path путь к файлу или папке
+     * @param options параметры архивации
+     * @return имя для записи Zip файла
+     */
+    static String getZipEntryName(Path path, ArchiveOptions options) {
+        Path directory = options.getWorkingDirectory();
+        if (directory == null || !path.startsWith(directory) || path.equals(directory))
+            return getZipEntryName(path);
+        return getZipEntryName(directory.relativize(path), path.toFile().isDirectory());
+    }
+
+    private static String getZipEntryName(Path path, boolean directory) {
+        StringBuilder builder = new StringBuilder();
+        Path normalizedPath = path.normalize();
+        for (int i = 0; i < normalizedPath.getNameCount(); i++) {
+            builder.append(normalizedPath.getName(i));
+            if (i < normalizedPath.getNameCount() -1) builder.append("/");
+        }
+        if (directory) builder.append("/");
+        return builder.toString();
+    }
+}
\ No newline at end of file
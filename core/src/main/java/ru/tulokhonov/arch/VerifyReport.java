@@ -0,0 +1,181 @@
+package ru.tulokhonov.arch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Результат проверки архива: количество проверенных записей, объем распакованных данных и первые
+ * {@link #MAX_FAILURES} ошибок в порядке записей архива. Потокобезопасен
+ */
+public class VerifyReport {
+    static final int MAX_FAILURES = 100;
+
+    /**
+     * Вид ошибки проверки
+     */
+    public enum Problem {
+        /** Данные записи не читаются: неверный заголовок, сжатые данные или метод сжатия */
+        CORRUPT,
+        /** Контрольная сумма данных не совпадает с центральным каталогом или дескриптором данных */
+        CRC,
+        /** Размер данных не совпадает с центральным каталогом или дескриптором данных */
+        SIZE,
+        /** Записи нет в исходной папке */
+        MISSING_SOURCE,
+        /** Размер файла в исходной папке отличается */
+        SOURCE_SIZE,
+        /** Содержимое файла в исходной папке отличается */
+        SOURCE_CRC,
+        /** Файл есть в исходной папке, но отсутствует в архиве */
+        EXTRA_SOURCE
+    }
+
+    /**
+     * Ошибка проверки одной записи
+     */
+    public static final class Failure {
+        private final long ordinal;
+        private final String entry;
+        private final Problem problem;
+        private final String message;
+
+        Failure(long ordinal, String entry, Problem problem, String message) {
+            this.ordinal = ordinal;
+            this.entry = entry;
+            this.problem = problem;
+            this.message = message == null ? "" : message;
+        }
+
+        /**
+         * @return имя записи
+         */
+        public String getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return вид ошибки
+         */
+        public Problem getProblem() {
+            return problem;
+        }
+
+        /**
+         * @return описание ошибки
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return problem + " " + entry + ": " + message;
+        }
+    }
+
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder size = new LongAdder();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final List<Failure> failures = new ArrayList<>();
+
+    void entryVerified(long entrySize) {
+        entries.increment();
+        size.add(entrySize);
+    }
+
+    /**
+     * Добавляет ошибку. Сохраняются ошибки первых по порядку записей
+     * @param ordinal порядковый номер записи в архиве
+     * @param entry имя записи
+     * @param problem вид ошибки
+     * @param message описание ошибки
+     */
+    void fail(long ordinal, String entry, Problem problem, String message) {
+        failureCount.incrementAndGet();
+        synchronized (failures) {
+            failures.add(new Failure(ordinal, entry, problem, message));
+            failures.sort(Comparator.comparingLong(failure -> failure.ordinal));
+            if (failures.size() > MAX_FAILURES)
+                failures.remove(failures.size() - 1);
+        }
+    }
+
+    /**
+     * @return да, если ошибок нет
+     */
+    public boolean isOk() {
+        return failureCount.get() == 0;
+    }
+
+    /**
+     * @return количество проверенных записей, включая файлы блоков режима solid
+     */
+    public long getEntries() {
+        return entries.sum();
+    }
+
+    /**
+     * @return объем проверенных несжатых данных в байтах
+     */
+    public long getSize() {
+        return size.sum();
+    }
+
+    /**
+     * @return общее количество ошибок
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return первые ошибки в порядке записей архива
+     */
+    public List<Failure> getFailures() {
+        synchronized (failures) {
+            return Collections.unmodifiableList(new ArrayList<>(failures));
+        }
+    }
+
+    /**
+     * @return отчет одной строкой в формате JSON
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"ok\":").append(isOk())
+                .append(",\"entries\":").append(getEntries())
+                .append(",\"size\":").append(getSize())
+                .append(",\"failureCount\":").append(getFailureCount())
+                .append(",\"failures\":[");
+        List<Failure> list = getFailures();
+        for (int i = 0; i < list.size(); i++) {
+            Failure failure = list.get(i);
+            if (i > 0)
+                json.append(',');
+            json.append("{\"entry\":").append(quote(failure.entry))
+                    .append(",\"problem\":").append(quote(failure.problem.name().toLowerCase(Locale.ROOT)))
+                    .append(",\"message\":").append(quote(failure.message))
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                quoted.append('\\').append(c);
+            else if (c < 0x20)
+                quoted.append(String.format("\\u%04x", (int) c));
+            else
+                quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+}
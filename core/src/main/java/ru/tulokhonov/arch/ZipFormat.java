@@ -0,0 +1,185 @@
+package ru.tulokhonov.arch;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Константы и вспомогательные функции формата Zip
+ * @see "https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT"
+ */
+final class ZipFormat {
+    static final int LOCAL_HEADER_SIG = 0x04034b50;
+    static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    static final int END_OF_CENTRAL_DIR_SIG = 0x06054b50;
+    static final int ZIP64_END_OF_CENTRAL_DIR_SIG = 0x06064b50;
+    static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_OF_CENTRAL_DIR_SIZE = 22;
+    static final int ZIP64_END_OF_CENTRAL_DIR_SIZE = 56;
+    static final int ZIP64_LOCATOR_SIZE = 20;
+    static final int ZIP64_EXTRA_ID = 0x0001;
+    /** Дополнительное поле, которым архиватор отмечает свои служебные записи: идентификатор и сигнатура */
+    static final int SERVICE_EXTRA_ID = 0x4152;
+    static final int SERVICE_MAGIC = 0x56435241;
+    static final int SERVICE_EXTRA_SIZE = 8;
+
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+
+    static final int FLAG_DATA_DESCRIPTOR = 0x08;
+    static final int FLAG_UTF8 = 0x800;
+
+    static final int VERSION_STORED = 10;
+    static final int VERSION_DEFLATED = 20;
+    static final int VERSION_ZIP64 = 45;
+
+    static final long MAX_32 = 0xFFFFFFFFL;
+    static final int MAX_16 = 0xFFFF;
+
+    private ZipFormat() {}
+
+    /**
+     * Переводит время Java в формат времени MS-DOS
+     * @param millis время в миллисекундах
+     * @return время в формате MS-DOS
+     */
+    static long javaToDosTime(long millis) {
+        LocalDateTime d = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (d.getYear() < 1980)
+            return (1 << 21) | (1 << 16);
+        return ((long) (d.getYear() - 1980) << 25) | (d.getMonthValue() << 21) | (d.getDayOfMonth() << 16)
+                | (d.getHour() << 11) | (d.getMinute() << 5) | (d.getSecond() >> 1);
+    }
+
+    /**
+     * Переводит время в формате MS-DOS во время Java
+     * @param dosTime время в формате MS-DOS
+     * @return время в миллисекундах
+     */
+    static long dosToJavaTime(long dosTime) {
+        LocalDateTime d = LocalDateTime.of(
+                (int) ((dosTime >> 25) & 0x7f) + 1980,
+                Math.max(1, Math.min(12, (int) ((dosTime >> 21) & 0x0f))),
+                Math.max(1, Math.min(28, (int) ((dosTime >> 16) & 0x1f))),
+                Math.min(23, (int) ((dosTime >> 11) & 0x1f)),
+                Math.min(59, (int) ((dosTime >> 5) & 0x3f)),
+                Math.min(59, (int) ((dosTime << 1) & 0x3e)));
+        return d.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Записывает дополнительное поле служебной записи архиватора
+     * @param b буфер
+     * @param off смещение поля в буфере
+     * @return длина поля
+     */
+    static int putServiceExtra(byte[] b, int off) {
+        putShort(b, off, SERVICE_EXTRA_ID);
+        putShort(b, off + 2, SERVICE_EXTRA_SIZE - 4);
+        putInt(b, off + 4, SERVICE_MAGIC);
+        return SERVICE_EXTRA_SIZE;
+    }
+
+    /**
+     * Проверяет, есть ли среди дополнительных полей записи поле служебной записи архиватора
+     * @param extra дополнительные поля записи, может быть null
+     * @return да, если запись отмечена архиватором как служебная
+     */
+    static boolean hasServiceExtra(byte[] extra) {
+        if (extra == null)
+            return false;
+        for (int i = 0; i + 4 <= extra.length; ) {
+            int id = getShort(extra, i);
+            int length = getShort(extra, i + 2);
+            if (i + 4 + length > extra.length)
+                return false;
+            if (id == SERVICE_EXTRA_ID && length == SERVICE_EXTRA_SIZE - 4 && getInt(extra, i + 4) == SERVICE_MAGIC)
+                return true;
+            i += 4 + length;
+        }
+        return false;
+    }
+
+    static void putShort(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+    }
+
+    static void putInt(byte[] b, int off, long value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+        b[off + 2] = (byte) (value >>> 16);
+        b[off + 3] = (byte) (value >>> 24);
+    }
+
+    static void putLong(byte[] b, int off, long value) {
+        putInt(b, off, value);
+        putInt(b, off + 4, value >>> 32);
+    }
+
+    static int getShort(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    static long getInt(byte[] b, int off) {
+        return (getShort(b, off) | ((long) getShort(b, off + 2) << 16)) & MAX_32;
+    }
+
+    static long getLong(byte[] b, int off) {
+        return getInt(b, off) | (getInt(b, off + 4) << 32);
+    }
+
+    /**
+     * Объединяет контрольные суммы CRC32 двух последовательных блоков данных (crc32_combine из zlib)
+     * @param crc1 CRC32 первого блока
+     * @param crc2 CRC32 второго блока
+     * @param len2 длина второго блока в байтах
+     * @return CRC32 объединенных блоков
+     */
+    static long crc32Combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0)
+            return crc1;
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = 0xEDB88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0)
+                crc1 = gf2MatrixTimes(even, crc1);
+            len2 >>= 1;
+            if (len2 == 0)
+                break;
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0)
+                crc1 = gf2MatrixTimes(odd, crc1);
+            len2 >>= 1;
+        } while (len2 != 0);
+        return (crc1 ^ crc2) & MAX_32;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        for (int i = 0; vec != 0; i++, vec >>>= 1) {
+            if ((vec & 1) != 0)
+                sum ^= mat[i];
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for (int n = 0; n < 32; n++)
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+    }
+}
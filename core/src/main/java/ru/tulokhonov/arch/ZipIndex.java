@@ -0,0 +1,256 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Индекс записей Zip файла, построенный по центральному каталогу. Позволяет читать записи
+ * в произвольном порядке без последовательного чтения всего архива. Поддерживает формат ZIP64
+ */
+public class ZipIndex {
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private final FileChannel channel;
+    private final List<ZipRecord> records;
+    private final long centralDirOffset;
+
+    private ZipIndex(FileChannel channel, List<ZipRecord> records, long centralDirOffset) {
+        this.channel = channel;
+        this.records = Collections.unmodifiableList(records);
+        this.centralDirOffset = centralDirOffset;
+    }
+
+    /**
+     * Читает центральный каталог Zip файла
+     * @param channel канал Zip файла. Канал не закрывается
+     * @return индекс записей
+     * @throws IOException если файл не является правильным Zip файлом или при ошибке ввода-вывода
+     */
+    public static ZipIndex read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIR_SIZE + MAX_COMMENT_SIZE);
+        byte[] tail = new byte[tailSize];
+        readFully(channel, ByteBuffer.wrap(tail), size - tailSize);
+
+        int eocd = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIR_SIZE; i >= 0; i--) {
+            if (getInt(tail, i) == END_OF_CENTRAL_DIR_SIG
+                    && i + END_OF_CENTRAL_DIR_SIZE + getShort(tail, i + 20) == tailSize) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0)
+            throw new IOException("Ошибка! Не найден центральный каталог Zip");
+
+        long count = getShort(tail, eocd + 10);
+        long centralDirSize = getInt(tail, eocd + 12);
+        long centralDirOffset = getInt(tail, eocd + 16);
+        if (count == MAX_16 || centralDirSize == MAX_32 || centralDirOffset == MAX_32) {
+            // Настоящие значения находятся в записи конца центрального каталога ZIP64, на которую указывает локатор
+            long locatorOffset = size - tailSize + eocd - ZIP64_LOCATOR_SIZE;
+            if (locatorOffset >= 0) {
+                byte[] record = new byte[ZIP64_END_OF_CENTRAL_DIR_SIZE];
+                readFully(channel, ByteBuffer.wrap(record, 0, ZIP64_LOCATOR_SIZE), locatorOffset);
+                if (getInt(record, 0) == ZIP64_LOCATOR_SIG) {
+                    long zip64EndOffset = getLong(record, 8);
+                    if (zip64EndOffset < 0 || zip64EndOffset + ZIP64_END_OF_CENTRAL_DIR_SIZE > locatorOffset)
+                        throw new IOException("Ошибка! Неверный центральный каталог Zip");
+                    readFully(channel, ByteBuffer.wrap(record), zip64EndOffset);
+                    if (getInt(record, 0) != ZIP64_END_OF_CENTRAL_DIR_SIG)
+                        throw new IOException("Ошибка! Неверный центральный каталог Zip");
+                    count = getLong(record, 32);
+                    centralDirSize = getLong(record, 40);
+                    centralDirOffset = getLong(record, 48);
+                }
+            }
+        }
+        if (count < 0 || centralDirSize < 0 || centralDirOffset < 0
+                || count > centralDirSize / CENTRAL_HEADER_SIZE || centralDirOffset + centralDirSize > size)
+            throw new IOException("Ошибка! Неверный центральный каталог Zip");
+
+        return new ZipIndex(channel, readCentralDirectory(channel, centralDirOffset, centralDirSize, count), centralDirOffset);
+    }
+
+    private static List<ZipRecord> readCentralDirectory(FileChannel channel, long offset, long size, long count) throws IOException {
+        List<ZipRecord> records = new ArrayList<>((int) Math.min(count, 1 << 16));
+        byte[] header = new byte[CENTRAL_HEADER_SIZE];
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new ChannelInputStream(channel, offset, size), 64 * 1024))) {
+            for (int i = 0; i < count; i++) {
+                in.readFully(header);
+                if (getInt(header, 0) != CENTRAL_HEADER_SIG)
+                    throw new IOException("Ошибка! Неверная запись центрального каталога Zip");
+                byte[] name = new byte[getShort(header, 28)];
+                in.readFully(name);
+
+                // Имена читаются в UTF-8, как и в ZipInputStream
+                ZipRecord record = new ZipRecord(new String(name, StandardCharsets.UTF_8));
+                record.flags = getShort(header, 8);
+                record.method = getShort(header, 10);
+                record.dosTime = getInt(header, 12);
+                record.crc = getInt(header, 16);
+                record.compressedSize = getInt(header, 20);
+                record.size = getInt(header, 24);
+                record.localHeaderOffset = getInt(header, 42);
+                byte[] extra = new byte[getShort(header, 30)];
+                in.readFully(extra);
+                readZip64Extra(record, extra);
+                record.service = hasServiceExtra(extra);
+                in.skipBytes(getShort(header, 32));
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Заменяет значения 0xFFFFFFFF размеров и смещения записи значениями из дополнительного поля ZIP64.
+     * Поле содержит только замененные значения в порядке: размер, сжатый размер, смещение
+     */
+    private static void readZip64Extra(ZipRecord record, byte[] extra) throws IOException {
+        for (int i = 0; i + 4 <= extra.length; ) {
+            int id = getShort(extra, i);
+            int length = getShort(extra, i + 2);
+            int end = i + 4 + length;
+            if (end > extra.length)
+                break;
+            if (id == ZIP64_EXTRA_ID) {
+                int off = i + 4;
+                if (record.size == MAX_32 && off + 8 <= end) {
+                    record.size = getLong(extra, off);
+                    off += 8;
+                }
+                if (record.compressedSize == MAX_32 && off + 8 <= end) {
+                    record.compressedSize = getLong(extra, off);
+                    off += 8;
+                }
+                if (record.localHeaderOffset == MAX_32 && off + 8 <= end)
+                    record.localHeaderOffset = getLong(extra, off);
+                if (record.size < 0 || record.compressedSize < 0 || record.localHeaderOffset < 0)
+                    throw new IOException("Ошибка! Неверная запись центрального каталога Zip: " + record.name);
+                return;
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * @return канал Zip файла
+     */
+    FileChannel channel() {
+        return channel;
+    }
+
+    /**
+     * @return смещение центрального каталога, то есть конец локальных заголовков и данных записей
+     */
+    long centralDirOffset() {
+        return centralDirOffset;
+    }
+
+    /**
+     * @return записи архива в порядке центрального каталога
+     */
+    public List<ZipRecord> records() {
+        return records;
+    }
+
+    /**
+     * Вычисляет смещение начала данных записи по ее локальному заголовку
+     * @param record запись архива
+     * @return смещение данных записи в файле
+     * @throws IOException если локальный заголовок неверный или при ошибке ввода-вывода
+     */
+    long dataOffset(ZipRecord record) throws IOException {
+        byte[] header = new byte[LOCAL_HEADER_SIZE];
+        readFully(channel, ByteBuffer.wrap(header), record.localHeaderOffset);
+        if (getInt(header, 0) != LOCAL_HEADER_SIG)
+            throw new ZipException("Ошибка! Неверный локальный заголовок записи Zip: " + record.name);
+        return record.localHeaderOffset + LOCAL_HEADER_SIZE + getShort(header, 26) + getShort(header, 28);
+    }
+
+    /**
+     * Открывает поток сжатых данных записи
+     * @param record запись архива
+     * @return входной поток сжатых данных
+     * @throws IOException при ошибке ввода-вывода
+     */
+    InputStream openRaw(ZipRecord record) throws IOException {
+        return new ChannelInputStream(channel, dataOffset(record), record.compressedSize);
+    }
+
+    /**
+     * Открывает поток распакованных данных записи
+     * @param record запись архива
+     * @return входной поток данных записи
+     * @throws IOException если метод сжатия не поддерживается или при ошибке ввода-вывода
+     */
+    InputStream open(ZipRecord record) throws IOException {
+        if (!deflated(record))
+            return openRaw(record);
+        Inflater inflater = new Inflater(true);
+        return inflate(openRaw(record), inflater, inflater::end);
+    }
+
+    /**
+     * Открывает поток распакованных данных записи. Inflater берется из пула и возвращается в него при закрытии потока
+     * @param record запись архива
+     * @param codecs пул Inflater
+     * @return входной поток данных записи
+     * @throws IOException если метод сжатия не поддерживается или при ошибке ввода-вывода
+     */
+    InputStream open(ZipRecord record, CodecPool codecs) throws IOException {
+        if (!deflated(record))
+            return openRaw(record);
+        Inflater inflater = codecs.inflater();
+        return inflate(openRaw(record), inflater, () -> codecs.release(inflater));
+    }
+
+    private static boolean deflated(ZipRecord record) throws ZipException {
+        if (record.method == STORED)
+            return false;
+        if (record.method != DEFLATED)
+            throw new ZipException("Ошибка! Неподдерживаемый метод сжатия записи: " + record.name);
+        return true;
+    }
+
+    /**
+     * @param release освобождение Inflater, выполняется один раз при закрытии потока
+     */
+    private static InputStream inflate(InputStream raw, Inflater inflater, Runnable release) {
+        return new InflaterInputStream(raw, inflater, 64 * 1024) {
+            private boolean released;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!released) {
+                        released = true;
+                        release.run();
+                    }
+                }
+            }
+        };
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0)
+                throw new EOFException("Неожиданный конец Zip файла");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ru.tulokhonov.arch;
+
+/**
+ * Метаданные записи Zip файла. Используются при записи архива и при чтении центрального каталога
+ */
+public class ZipRecord {
+    String name;
+    int method = ZipFormat.DEFLATED;
+    int flags;
+    long dosTime;
+    long crc;
+    long compressedSize;
+    long size;
+    long localHeaderOffset;
+    /** Служебная запись архиватора: манифест или блок solid. Отмечается дополнительным полем записи */
+    boolean service;
+
+    ZipRecord(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return имя записи
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return метод сжатия: 0 - без сжатия (STORED), 8 - DEFLATE
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * @return контрольная сумма CRC32 несжатых данных
+     */
+    public long getCrc() {
+        return crc;
+    }
+
+    /**
+     * @return размер сжатых данных в байтах
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * @return размер несжатых данных в байтах
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return время последнего изменения в миллисекундах
+     */
+    public long getTime() {
+        return ZipFormat.dosToJavaTime(dosTime);
+    }
+
+    /**
+     * @return да, если запись является директорией
+     */
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
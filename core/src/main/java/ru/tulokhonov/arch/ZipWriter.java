@@ -0,0 +1,357 @@
+package ru.tulokhonov.arch;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+import static ru.tulokhonov.arch.ZipFormat.*;
+
+/**
+ * Низкоуровневая запись Zip файла: локальные заголовки, данные записей, дескрипторы данных и центральный каталог.
+ * В отличие от ZipOutputStream принимает уже сжатые данные, поэтому сжатие может выполняться вне потока записи.
+ * Размеры и смещения от 4 ГБ и количество записей больше 65535 записываются в формате ZIP64.
+ * Не является потокобезопасным
+ */
+class ZipWriter implements Closeable {
+    private final OutputStream target;
+    private final WritableByteChannel channel;
+    private final BufferPool buffers;
+    private ByteBuffer buffer;
+    private final List<ZipRecord> records = new ArrayList<>();
+    private final byte[] header = new byte[ZIP64_END_OF_CENTRAL_DIR_SIZE];
+    private final byte[] extra = new byte[4 + 3 * 8 + SERVICE_EXTRA_SIZE];
+    private long position;
+    private boolean finished;
+
+    /**
+     * @param target выходной поток. Запись буферизуется; если поток пишет в файл (FileOutputStream),
+     *               данные записей без сжатия копируются в него напрямую через FileChannel.transferTo
+     */
+    ZipWriter(OutputStream target) {
+        this(target, target instanceof FileOutputStream ? ((FileOutputStream) target).getChannel() : Channels.newChannel(target),
+                BufferPool.heap());
+    }
+
+    /**
+     * @param target выходной поток
+     * @param channel канал, пишущий в тот же приемник, что и выходной поток: в него копируются данные
+     *                {@link #transferFrom(FileChannel, long, long)}
+     * @param buffers пул, из которого берется буфер записи. Буфер возвращается при завершении архива
+     */
+    ZipWriter(OutputStream target, WritableByteChannel channel, BufferPool buffers) {
+        this.target = target;
+        this.channel = channel;
+        this.buffers = buffers;
+        this.buffer = buffers.acquire();
+    }
+
+    /**
+     * @return количество байт, записанных в выходной поток
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * Записывает локальный заголовок записи. Если у записи установлен флаг дескриптора данных,
+     * контрольная сумма и размеры в заголовке записываются нулями и должны быть переданы в {@link #closeEntry(ZipRecord)}
+     * (размер может быть любым: дескриптор данных записывается в формате ZIP64, если размер от 4 ГБ, как в ZipOutputStream)
+     * @param record метаданные записи
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void putLocalHeader(ZipRecord record) throws IOException {
+        if (finished)
+            throw new IOException("Архив уже завершен");
+        byte[] name = nameBytes(record);
+        boolean descriptor = (record.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        boolean zip64 = !descriptor && (record.size >= MAX_32 || record.compressedSize >= MAX_32);
+        record.localHeaderOffset = position;
+
+        int extraLength = 0;
+        if (zip64) {
+            putShort(extra, 0, ZIP64_EXTRA_ID);
+            putShort(extra, 2, 16);
+            putLong(extra, 4, record.size);
+            putLong(extra, 12, record.compressedSize);
+            extraLength = 20;
+        }
+        if (record.service)
+            extraLength += putServiceExtra(extra, extraLength);
+        putInt(header, 0, LOCAL_HEADER_SIG);
+        putShort(header, 4, zip64 ? VERSION_ZIP64 : versionNeeded(record));
+        putShort(header, 6, record.flags);
+        putShort(header, 8, record.method);
+        putInt(header, 10, record.dosTime);
+        putInt(header, 14, descriptor ? 0 : record.crc);
+        putInt(header, 18, descriptor ? 0 : zip64 ? MAX_32 : record.compressedSize);
+        putInt(header, 22, descriptor ? 0 : zip64 ? MAX_32 : record.size);
+        putShort(header, 26, name.length);
+        putShort(header, 28, extraLength);
+        write(header, 0, LOCAL_HEADER_SIZE);
+        write(name, 0, name.length);
+        write(extra, 0, extraLength);
+    }
+
+    /**
+     * Записывает данные текущей записи
+     * @param b буфер
+     * @param off смещение в буфере
+     * @param len количество байт
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void write(byte[] b, int off, int len) throws IOException {
+        if (len > buffer.remaining()) {
+            flushBuffer();
+            if (len > buffer.remaining()) {
+                target.write(b, off, len);
+                position += len;
+                return;
+            }
+        }
+        buffer.put(b, off, len);
+        position += len;
+    }
+
+    private void flushBuffer() throws IOException {
+        target.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    /**
+     * Копирует данные текущей записи из файла без участия кучи (zero-copy, если выходной поток пишет в файл)
+     * @param source канал файла-источника
+     * @param offset позиция начала данных в файле-источнике
+     * @param count количество байт
+     * @throws IOException при ошибке ввода-вывода или если файл-источник короче указанного размера
+     */
+    void transferFrom(FileChannel source, long offset, long count) throws IOException {
+        flushBuffer();
+        target.flush();
+        long transferred = 0;
+        while (transferred < count) {
+            long n = source.transferTo(offset + transferred, count - transferred, channel);
+            if (n <= 0) {
+                if (offset + transferred >= source.size())
+                    throw new EOFException("Неожиданный конец файла при копировании данных");
+                continue;
+            }
+            transferred += n;
+        }
+        position += count;
+    }
+
+    /**
+     * Копирует запись из другого архива без распаковки: пишет новый локальный заголовок с известными
+     * контрольной суммой и размерами и сжатые данные записи
+     * @param source метаданные исходной записи
+     * @param channel канал исходного архива
+     * @param dataOffset смещение сжатых данных исходной записи
+     * @return метаданные записи в новом архиве
+     * @throws IOException при ошибке ввода-вывода или если сжатые данные короче указанного размера
+     */
+    ZipRecord copyRaw(ZipRecord source, FileChannel channel, long dataOffset) throws IOException {
+        return copyRaw(source, source.name, channel, dataOffset);
+    }
+
+    /**
+     * Копирует запись из другого архива без распаковки под новым именем
+     * @param source метаданные исходной записи
+     * @param name имя записи в новом архиве
+     * @param channel канал исходного архива
+     * @param dataOffset смещение сжатых данных исходной записи
+     * @return метаданные записи в новом архиве
+     * @throws IOException при ошибке ввода-вывода или если сжатые данные короче указанного размера
+     */
+    ZipRecord copyRaw(ZipRecord source, String name, FileChannel channel, long dataOffset) throws IOException {
+        ZipRecord record = new ZipRecord(name);
+        record.method = source.method;
+        record.flags = source.flags & ~FLAG_DATA_DESCRIPTOR;
+        record.dosTime = source.dosTime;
+        record.crc = source.crc;
+        record.compressedSize = source.compressedSize;
+        record.size = source.size;
+        record.service = source.service;
+        putLocalHeader(record);
+        transferFrom(channel, dataOffset, record.compressedSize);
+        closeEntry(record);
+        return record;
+    }
+
+    /**
+     * Копирует локальные заголовки и данные всех записей другого архива одним блоком без изменений и добавляет
+     * его записи в центральный каталог со смещениями, сдвинутыми на текущую позицию
+     * @param index индекс архива-источника
+     * @throws IOException при ошибке ввода-вывода или если смещение записи архива-источника вне его данных
+     */
+    void append(ZipIndex index) throws IOException {
+        if (finished)
+            throw new IOException("Архив уже завершен");
+        long base = position;
+        for (ZipRecord source : index.records())
+            if (source.localHeaderOffset + LOCAL_HEADER_SIZE > index.centralDirOffset())
+                throw new ZipException("Ошибка! Неверное смещение записи Zip: " + source.name);
+        transferFrom(index.channel(), 0, index.centralDirOffset());
+        for (ZipRecord source : index.records()) {
+            ZipRecord record = new ZipRecord(source.name);
+            record.flags = source.flags;
+            record.method = source.method;
+            record.dosTime = source.dosTime;
+            record.crc = source.crc;
+            record.compressedSize = source.compressedSize;
+            record.size = source.size;
+            record.localHeaderOffset = base + source.localHeaderOffset;
+            record.service = source.service;
+            records.add(record);
+        }
+    }
+
+    /**
+     * Завершает запись: при необходимости пишет дескриптор данных и запоминает метаданные для центрального каталога
+     * @param record метаданные записи с заполненными контрольной суммой и размерами
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void closeEntry(ZipRecord record) throws IOException {
+        if ((record.flags & FLAG_DATA_DESCRIPTOR) != 0) {
+            putInt(header, 0, DATA_DESCRIPTOR_SIG);
+            putInt(header, 4, record.crc);
+            if (record.size >= MAX_32 || record.compressedSize >= MAX_32) {
+                putLong(header, 8, record.compressedSize);
+                putLong(header, 16, record.size);
+                write(header, 0, 24);
+            } else {
+                putInt(header, 8, record.compressedSize);
+                putInt(header, 12, record.size);
+                write(header, 0, 16);
+            }
+        }
+        records.add(record);
+    }
+
+    /**
+     * Записывает центральный каталог и завершает архив. Выходной поток не закрывается
+     * @throws IOException при ошибке ввода-вывода
+     */
+    void finish() throws IOException {
+        if (finished)
+            return;
+        finished = true;
+
+        long centralDirOffset = position;
+        for (ZipRecord record : records) {
+            byte[] name = nameBytes(record);
+            // В дополнительное поле ZIP64 попадают только значения, которые не помещаются в 32 бита, в порядке формата
+            int extraLength = 4;
+            if (record.size >= MAX_32) {
+                putLong(extra, extraLength, record.size);
+                extraLength += 8;
+            }
+            if (record.compressedSize >= MAX_32) {
+                putLong(extra, extraLength, record.compressedSize);
+                extraLength += 8;
+            }
+            if (record.localHeaderOffset >= MAX_32) {
+                putLong(extra, extraLength, record.localHeaderOffset);
+                extraLength += 8;
+            }
+            boolean zip64 = extraLength > 4;
+            if (zip64) {
+                putShort(extra, 0, ZIP64_EXTRA_ID);
+                putShort(extra, 2, extraLength - 4);
+            } else {
+                extraLength = 0;
+            }
+            if (record.service)
+                extraLength += putServiceExtra(extra, extraLength);
+            putInt(header, 0, CENTRAL_HEADER_SIG);
+            putShort(header, 4, zip64 ? VERSION_ZIP64 : VERSION_DEFLATED);
+            putShort(header, 6, zip64 ? VERSION_ZIP64 : versionNeeded(record));
+            putShort(header, 8, record.flags);
+            putShort(header, 10, record.method);
+            putInt(header, 12, record.dosTime);
+            putInt(header, 16, record.crc);
+            putInt(header, 20, Math.min(record.compressedSize, MAX_32));
+            putInt(header, 24, Math.min(record.size, MAX_32));
+            putShort(header, 28, name.length);
+            putShort(header, 30, extraLength);
+            putShort(header, 32, 0);
+            putShort(header, 34, 0);
+            putShort(header, 36, 0);
+            putInt(header, 38, 0);
+            putInt(header, 42, Math.min(record.localHeaderOffset, MAX_32));
+            write(header, 0, CENTRAL_HEADER_SIZE);
+            write(name, 0, name.length);
+            write(extra, 0, extraLength);
+        }
+        long centralDirSize = position - centralDirOffset;
+
+        if (records.size() >= MAX_16 || centralDirSize >= MAX_32 || centralDirOffset >= MAX_32) {
+            long zip64EndOffset = position;
+            putInt(header, 0, ZIP64_END_OF_CENTRAL_DIR_SIG);
+            putLong(header, 4, ZIP64_END_OF_CENTRAL_DIR_SIZE - 12);
+            putShort(header, 12, VERSION_ZIP64);
+            putShort(header, 14, VERSION_ZIP64);
+            putInt(header, 16, 0);
+            putInt(header, 20, 0);
+            putLong(header, 24, records.size());
+            putLong(header, 32, records.size());
+            putLong(header, 40, centralDirSize);
+            putLong(header, 48, centralDirOffset);
+            write(header, 0, ZIP64_END_OF_CENTRAL_DIR_SIZE);
+
+            putInt(header, 0, ZIP64_LOCATOR_SIG);
+            putInt(header, 4, 0);
+            putLong(header, 8, zip64EndOffset);
+            putInt(header, 16, 1);
+            write(header, 0, ZIP64_LOCATOR_SIZE);
+        }
+        putInt(header, 0, END_OF_CENTRAL_DIR_SIG);
+        putShort(header, 4, 0);
+        putShort(header, 6, 0);
+        putShort(header, 8, Math.min(records.size(), MAX_16));
+        putShort(header, 10, Math.min(records.size(), MAX_16));
+        putInt(header, 12, Math.min(centralDirSize, MAX_32));
+        putInt(header, 16, Math.min(centralDirOffset, MAX_32));
+        putShort(header, 20, 0);
+        write(header, 0, END_OF_CENTRAL_DIR_SIZE);
+        flushBuffer();
+        target.flush();
+        release();
+    }
+
+    /**
+     * Завершает архив и закрывает выходной поток
+     * @throws IOException при ошибке ввода-вывода
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            release();
+            target.close();
+        }
+    }
+
+    private void release() {
+        if (buffer != null)
+            buffers.release(buffer);
+        buffer = null;
+    }
+
+    private static byte[] nameBytes(ZipRecord record) {
+        byte[] name = record.name.getBytes(StandardCharsets.UTF_8);
+        if (name.length != record.name.length())
+            record.flags |= FLAG_UTF8;
+        return name;
+    }
+
+    private static int versionNeeded(ZipRecord record) {
+        return record.method == STORED && (record.flags & FLAG_DATA_DESCRIPTOR) == 0 ? VERSION_STORED : VERSION_DEFLATED;
+    }
+}
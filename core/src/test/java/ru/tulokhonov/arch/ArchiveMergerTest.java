@@ -0,0 +1,121 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArchiveMergerTest {
+    @Test
+    public void givenShards_whenMerge_thenEntriesCopiedWithoutRecompression() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path first = shard(target, "shard1", "first", false);
+        Path second = shard(target, "shard2", "second", false);
+
+        Path merged = merge(target, "first.zip", Arrays.asList(first, second), Collections.<String>emptyList(),
+                Collections.<String>emptyList(), DuplicatePolicy.FIRST);
+        Map<String, ZipRecord> records = Utils.list(merged).stream().collect(Collectors.toMap(ZipRecord::getName, r -> r));
+        assertTrue(records.containsKey("data/shard1/data.bin"));
+        assertTrue(records.containsKey("data/shard2/data.bin"));
+        assertEquals(Utils.list(first).stream().filter(r -> r.getName().equals("data/shard1/data.bin")).findFirst().get().getCompressedSize(),
+                records.get("data/shard1/data.bin").getCompressedSize());
+        assertEquals("first", read(merged, "data/common.txt"));
+        assertTrue(Utils.verify(merged, null, new ArchiveOptions()).isOk());
+
+        merged = merge(target, "last.zip", Arrays.asList(first, second), Collections.<String>emptyList(),
+                Collections.<String>emptyList(), DuplicatePolicy.LAST);
+        assertEquals("second", read(merged, "data/common.txt"));
+        assertEquals(1, Utils.list(merged).stream().filter(r -> r.getName().equals("data/")).count());
+
+        try {
+            merge(target, "fail.zip", Arrays.asList(first, second), Collections.<String>emptyList(),
+                    Collections.<String>emptyList(), DuplicatePolicy.FAIL);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("data/common.txt"));
+        }
+
+        merged = merge(target, "filtered.zip", Arrays.asList(first, second), Arrays.asList("data/shard1", "data/shard2"),
+                Arrays.asList("**.bin", "**/f*.txt"), DuplicatePolicy.FAIL);
+        List<String> names = Utils.list(merged).stream().map(ZipRecord::getName).collect(Collectors.toList());
+        assertEquals(Arrays.asList("data/shard1/", "data/shard1/text.txt", "data/shard2/", "data/shard2/text.txt"), names);
+    }
+
+    @Test
+    public void givenSolidShards_whenMergeWithFilter_thenBlocksCopiedOrRepacked() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path first = shard(target, "shard1", "first", true);
+        Path second = shard(target, "shard2", "second", true);
+
+        Path merged = merge(target, "solid.zip", Arrays.asList(first, second), Collections.<String>emptyList(),
+                Collections.singletonList("data/shard2/f1*.txt"), DuplicatePolicy.LAST);
+        assertTrue(Utils.verify(merged, null, new ArchiveOptions()).isOk());
+        Set<String> blocks = new HashSet<>();
+        try (ZipFile zip = new ZipFile(merged.toFile())) {
+            zip.stream().filter(entry -> SolidBlock.isBlock(entry)).forEach(entry -> assertTrue(blocks.add(entry.getName())));
+        }
+        assertEquals(2, blocks.size());
+
+        Path unzipped = target.resolve("unzipped");
+        Utils.unZip(merged, unzipped, new ArchiveOptions().setThreads(2));
+        assertEquals("second", new String(Files.readAllBytes(unzipped.resolve("data/common.txt")), "UTF-8"));
+        assertArrayEquals(Files.readAllBytes(target.resolve("shard1/data/shard1/f15.txt")),
+                Files.readAllBytes(unzipped.resolve("data/shard1/f15.txt")));
+        assertTrue(Files.exists(unzipped.resolve("data/shard2/f5.txt")));
+        assertFalse(Files.exists(unzipped.resolve("data/shard2/f15.txt")));
+        assertArrayEquals(Files.readAllBytes(target.resolve("shard2/data/shard2/data.bin")),
+                Files.readAllBytes(unzipped.resolve("data/shard2/data.bin")));
+    }
+
+    private static Path shard(Path target, String name, String common, boolean solid) throws IOException {
+        Path root = target.resolve(name);
+        Path dir = root.resolve("data").resolve(name);
+        Files.createDirectories(dir);
+        byte[] data = new byte[200_000];
+        new Random(name.hashCode()).nextBytes(data);
+        Files.write(dir.resolve("data.bin"), data);
+        Files.write(dir.resolve("text.txt"), ("текст " + name).getBytes("UTF-8"));
+        for (int i = 0; i < 20; i++)
+            Files.write(dir.resolve("f" + i + ".txt"), (name + " файл " + i).getBytes("UTF-8"));
+        Files.write(root.resolve("data/common.txt"), common.getBytes("UTF-8"));
+
+        Path zip = target.resolve(name + ".zip");
+        try (OutputStream os = new FileOutputStream(zip.toFile())) {
+            Utils.zip(Utils.getFiles(new String[] { root.resolve("data").toString() }), os,
+                    new ArchiveOptions().setWorkingDirectory(root).setSolid(solid));
+        }
+        return zip;
+    }
+
+    private static Path merge(Path target, String name, List<Path> archives, List<String> include, List<String> exclude,
+                              DuplicatePolicy policy) throws IOException {
+        Path merged = target.resolve(name);
+        try (OutputStream os = new FileOutputStream(merged.toFile())) {
+            Utils.merge(archives, os, include, exclude, new ArchiveOptions().setDuplicatePolicy(policy));
+        }
+        return merged;
+    }
+
+    private static String read(Path zip, String name) throws IOException {
+        try (ZipFile file = new ZipFile(zip.toFile());
+             InputStream is = file.getInputStream(file.getEntry(name))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = is.read(buffer)) >= 0)
+                out.write(buffer, 0, n);
+            return new String(out.toByteArray(), "UTF-8");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveServerTest {
+    @Test
+    public void givenServer_whenZipAndUnzipThroughClient_thenEntriesRelativeToClientDirectory() throws Exception {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path source = target.resolve("dir1");
+        Files.createDirectories(source.resolve("sub"));
+        byte[] data = new byte[200_000];
+        new Random(3).nextBytes(data);
+        Files.write(source.resolve("sub/data.bin"), data);
+        Files.write(source.resolve("text.txt"), "архиватор".getBytes("UTF-8"));
+
+        try (ArchiveServer server = new ArchiveServer(0)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (IOException ignored) {
+                    // Сервер закрыт
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            ArchiveClient client = new ArchiveClient(server.port());
+
+            ByteArrayOutputStream archive = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            int code = client.run(new String[] { "--connect", "--threads=2", "./dir1" }, target,
+                    new ByteArrayInputStream(new byte[0]), false, archive, err);
+            assertEquals(err.toString(), 0, code);
+            List<String> names = new ArrayList<>();
+            try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+                for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry())
+                    names.add(entry.getName());
+            }
+            assertTrue(names.toString(), names.contains("dir1/"));
+            assertTrue(names.toString(), names.contains("dir1/sub/data.bin"));
+            assertTrue(names.toString(), names.contains("dir1/text.txt"));
+
+            Path unzipped = target.resolve("unzipped");
+            Files.createDirectories(unzipped);
+            code = client.run(new String[0], unzipped, new ByteArrayInputStream(archive.toByteArray()), true,
+                    new ByteArrayOutputStream(), err);
+            assertEquals(err.toString(), 0, code);
+            assertArrayEquals(data, Files.readAllBytes(unzipped.resolve("dir1/sub/data.bin")));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            code = client.run(new String[] { "--no-such-option" }, target, new ByteArrayInputStream(new byte[0]), false, out, err);
+            assertEquals(1, code);
+            assertEquals(0, out.size());
+            assertTrue(err.size() > 0);
+        }
+    }
+
+    @Test
+    public void givenServer_whenConnectWithoutToken_thenRejectedAndTokenFileOwnerOnly() throws Exception {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Files.createDirectories(target);
+        Path tokenFile;
+        try (ArchiveServer server = new ArchiveServer(0)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    server.run();
+                } catch (IOException ignored) {
+                    // Сервер закрыт
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+            tokenFile = ServerProtocol.tokenFile(server.port());
+            if (Files.getFileStore(tokenFile).supportsFileAttributeView("posix"))
+                assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+                DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+                request.writeInt(ServerProtocol.MAGIC);
+                request.writeUTF("0000");
+                request.writeUTF(target.toString());
+                request.writeInt(1);
+                request.writeUTF(".");
+                request.writeBoolean(false);
+                request.flush();
+
+                DataInputStream response = new DataInputStream(socket.getInputStream());
+                int channel;
+                while ((channel = response.readUnsignedByte()) != ServerProtocol.END) {
+                    // Команда не выполняется, архив в stdout не передается
+                    assertEquals(ServerProtocol.STDERR, channel);
+                    response.skipBytes(response.readInt());
+                }
+                assertEquals(1, response.readInt());
+            }
+        }
+        assertFalse(Files.exists(tokenFile));
+    }
+}
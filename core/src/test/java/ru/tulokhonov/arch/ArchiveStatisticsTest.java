@@ -0,0 +1,69 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ArchiveStatisticsTest {
+    @Test
+    public void givenListener_whenZipAndUnzip_thenEntriesAndSizesReported() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        List<File> sourceFiles = Utils.getFiles(new String[] { "./pom.xml", "./src/test/resources" });
+        long sourceSize = sourceFiles.stream().filter(File::isFile).mapToLong(File::length).sum();
+
+        for (int threads : new int[] { 1, 4 }) {
+            ArchiveStatistics zipStatistics = new ArchiveStatistics();
+            Path zipFile = target.resolve("archive" + threads + ".zip");
+            try (OutputStream os = new FileOutputStream(zipFile.toFile())) {
+                Utils.zip(sourceFiles, os, new ArchiveOptions().setThreads(threads).setListener(zipStatistics));
+            }
+            zipStatistics.finish();
+            assertEquals(sourceFiles.size(), zipStatistics.getEntries());
+            assertEquals(sourceSize, zipStatistics.getSize());
+            assertTrue(zipStatistics.getCompressedSize() > 0 && zipStatistics.getCompressedSize() < Files.size(zipFile));
+            assertTrue(zipStatistics.getNanos(ArchivePhase.ENUMERATE) > 0);
+            assertTrue(zipStatistics.getNanos(ArchivePhase.READ) > 0);
+            assertTrue(zipStatistics.getNanos(ArchivePhase.DEFLATE) > 0);
+
+            ArchiveStatistics streamStatistics = new ArchiveStatistics();
+            try (InputStream is = new FileInputStream(zipFile.toFile())) {
+                Utils.unZip(is, target.resolve("stream" + threads), new ArchiveOptions().setListener(streamStatistics));
+            }
+            assertEquals(sourceFiles.size(), streamStatistics.getEntries());
+            assertEquals(sourceSize, streamStatistics.getSize());
+            assertEquals(zipStatistics.getCompressedSize(), streamStatistics.getCompressedSize());
+
+            ArchiveStatistics parallelStatistics = new ArchiveStatistics();
+            Utils.unZip(zipFile, target.resolve("parallel" + threads), new ArchiveOptions().setThreads(4).setListener(parallelStatistics));
+            assertEquals(sourceFiles.size(), parallelStatistics.getEntries());
+            assertEquals(sourceSize, parallelStatistics.getSize());
+            assertEquals(zipStatistics.getCompressedSize(), parallelStatistics.getCompressedSize());
+            assertTrue(parallelStatistics.getNanos(ArchivePhase.INFLATE) > 0);
+        }
+    }
+
+    @Test
+    public void givenStatistics_whenToJson_thenAllFieldsPresent() {
+        ArchiveStatistics statistics = new ArchiveStatistics();
+        EntryStatistics entry = new EntryStatistics("file.txt", false);
+        entry.size = 1000;
+        entry.compressedSize = 250;
+        entry.add(ArchivePhase.DEFLATE, 3_000_000);
+        statistics.entryCompleted(entry);
+        statistics.finish();
+
+        String json = statistics.toJson();
+        assertTrue(json, json.startsWith("{\"entries\":1,\"size\":1000,\"compressedSize\":250,\"ratio\":0.250,"));
+        assertTrue(json, json.contains("\"phaseMillis\":{\"enumerate\":0,\"read\":0,\"deflate\":3,\"inflate\":0,\"write\":0}}"));
+        assertTrue(json, json.contains("\"entriesPerSecond\":"));
+        assertTrue(json, json.contains("\"bytesPerSecond\":"));
+    }
+}
@@ -0,0 +1,101 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveVerifierTest {
+    @Test
+    public void givenArchive_whenVerify_thenOk() throws IOException {
+        Path target = createTarget();
+        for (boolean solid : new boolean[] { false, true }) {
+            Path zip = zip(target, solid);
+            VerifyReport report = Utils.verify(zip, target, new ArchiveOptions().setThreads(4));
+            assertTrue(report.toJson(), report.isOk());
+            assertEquals(Utils.getFolderSize(target.resolve("dir1")), report.getSize());
+
+            try (InputStream is = new BufferedInputStream(new FileInputStream(zip.toFile()))) {
+                report = Utils.verify(is, target, new ArchiveOptions());
+            }
+            assertTrue(report.toJson(), report.isOk());
+            assertEquals(Utils.getFolderSize(target.resolve("dir1")), report.getSize());
+        }
+    }
+
+    @Test
+    public void givenCorruptedArchive_whenVerify_thenFailureReported() throws IOException {
+        Path target = createTarget();
+        Path zip = zip(target, false);
+        byte[] bytes = Files.readAllBytes(zip);
+        // Порча байта в данных записи со случайными данными сразу после ее локального заголовка
+        int offset = new String(bytes, "ISO-8859-1").indexOf("dir1/sub/data.bin");
+        bytes[offset + 1000] ^= 0x55;
+        Path corrupted = target.resolve("corrupted.zip");
+        Files.write(corrupted, bytes);
+
+        Set<VerifyReport.Problem> expected = EnumSet.of(VerifyReport.Problem.CRC, VerifyReport.Problem.CORRUPT);
+        VerifyReport report = Utils.verify(corrupted, null, new ArchiveOptions().setThreads(2));
+        assertFalse(report.isOk());
+        assertEquals("dir1/sub/data.bin", report.getFailures().get(0).getEntry());
+        assertTrue(report.toJson(), expected.contains(report.getFailures().get(0).getProblem()));
+
+        try (InputStream is = new ByteArrayInputStream(bytes)) {
+            report = Utils.verify(is, null, new ArchiveOptions());
+        }
+        assertFalse(report.isOk());
+        assertEquals("dir1/sub/data.bin", report.getFailures().get(0).getEntry());
+        assertTrue(report.toJson(), expected.contains(report.getFailures().get(0).getProblem()));
+    }
+
+    @Test
+    public void givenChangedSource_whenVerify_thenDifferencesReported() throws IOException {
+        Path target = createTarget();
+        Path zip = zip(target, false);
+        Files.write(target.resolve("dir1/text.txt"), "архиватор!".getBytes("UTF-8"));
+        Files.delete(target.resolve("dir1/sub/data.bin"));
+        Files.write(target.resolve("dir1/sub/new.txt"), new byte[] { 1 });
+
+        VerifyReport report = Utils.verify(zip, target, new ArchiveOptions().setThreads(2));
+        assertFalse(report.isOk());
+        assertEquals(3, report.getFailureCount());
+        Set<VerifyReport.Problem> problems = EnumSet.noneOf(VerifyReport.Problem.class);
+        for (VerifyReport.Failure failure : report.getFailures())
+            problems.add(failure.getProblem());
+        assertEquals(EnumSet.of(VerifyReport.Problem.SOURCE_SIZE, VerifyReport.Problem.MISSING_SOURCE,
+                VerifyReport.Problem.EXTRA_SOURCE), problems);
+        assertTrue(report.toJson().contains("\"entry\":\"dir1/sub/new.txt\",\"problem\":\"extra_source\""));
+    }
+
+    private static Path createTarget() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path source = target.resolve("dir1");
+        Files.createDirectories(source.resolve("sub"));
+        Files.createDirectories(source.resolve("empty"));
+        byte[] data = new byte[300_000];
+        new Random(7).nextBytes(data);
+        Files.write(source.resolve("sub/data.bin"), data);
+        Files.write(source.resolve("text.txt"), "архиватор".getBytes("UTF-8"));
+        for (int i = 0; i < 50; i++)
+            Files.write(source.resolve("sub/f" + i + ".txt"), ("строка " + i).getBytes("UTF-8"));
+        return target;
+    }
+
+    private static Path zip(Path target, boolean solid) throws IOException {
+        Path zip = target.resolve(solid ? "solid.zip" : "plain.zip");
+        try (OutputStream os = new FileOutputStream(zip.toFile())) {
+            Utils.zip(Utils.getFiles(new String[] { target.resolve("dir1").toString() }), os,
+                    new ArchiveOptions().setWorkingDirectory(target).setSolid(solid).setThreads(2));
+        }
+        return zip;
+    }
+}
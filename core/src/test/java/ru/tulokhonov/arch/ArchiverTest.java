@@ -0,0 +1,130 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ArchiverTest {
+    @Test
+    public void givenSharedArchiver_whenZipConcurrently_thenEveryArchiveIsComplete() throws Exception {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path source = createSource(target);
+        List<File> files = Utils.getFiles(new String[] { source.toString() });
+        Map<String, byte[]> expected = read(source, target);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (Archiver archiver = new Archiver(new ArchiveOptions().setWorkingDirectory(target), 2)) {
+            List<Future<ByteBuffer>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++)
+                futures.add(pool.submit(() -> archiver.zip(files)));
+            for (Future<ByteBuffer> future : futures) {
+                ByteBuffer zip = future.get();
+                Map<String, byte[]> actual = unzip(new ByteArrayInputStream(zip.array(), zip.position(), zip.remaining()));
+                assertEquals(expected.keySet(), actual.keySet());
+                for (Map.Entry<String, byte[]> entry : expected.entrySet())
+                    assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void givenArchiver_whenZipToChannelAndUnzip_thenOk() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path source = createSource(target);
+        List<File> files = Utils.getFiles(new String[] { source.toString() });
+        Path zip = target.resolve("archive.zip");
+        try (Archiver archiver = new Archiver(new ArchiveOptions().setWorkingDirectory(target))) {
+            try (FileChannel channel = FileChannel.open(zip, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                archiver.zip(files, channel);
+            }
+            archiver.unZip(zip, target.resolve("fromFile"));
+            try (InputStream is = new ByteArrayInputStream(Files.readAllBytes(zip))) {
+                archiver.unZip(is, target.resolve("fromStream"));
+            }
+        }
+        for (String dir : new String[] { "fromFile", "fromStream" }) {
+            assertEquals(Utils.getFolderSize(source), Utils.getFolderSize(target.resolve(dir)));
+            assertArrayEquals(Files.readAllBytes(source.resolve("random.bin")),
+                    Files.readAllBytes(target.resolve(dir).resolve("source/random.bin")));
+        }
+    }
+
+    @Test
+    public void givenCodecPool_whenRelease_thenInstancesReusedUpToLimit() {
+        try (CodecPool codecs = new CodecPool(1, BufferPool.heap())) {
+            Deflater first = codecs.deflater(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+            Deflater second = codecs.deflater(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+            codecs.release(first, Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+            codecs.release(second, Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+            assertSame(first, codecs.deflater(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY));
+            assertNotSame(second, codecs.deflater(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY));
+
+            Deflater other = codecs.deflater(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+            codecs.release(other, Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+            assertNotSame(other, codecs.deflater(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY));
+
+            Inflater inflater = codecs.inflater();
+            codecs.release(inflater);
+            assertSame(inflater, codecs.inflater());
+        }
+    }
+
+    private static Path createSource(Path target) throws IOException {
+        Path source = target.resolve("source");
+        Files.createDirectories(source.resolve("sub"));
+        Files.createDirectories(source.resolve("empty"));
+        byte[] random = new byte[300_000];
+        new Random(11).nextBytes(random);
+        Files.write(source.resolve("random.bin"), random);
+        for (int i = 0; i < 10; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 2000; j++)
+                text.append("строка ").append(i).append(' ').append(j).append('\n');
+            Files.write(source.resolve("sub/text" + i + ".txt"), text.toString().getBytes("UTF-8"));
+        }
+        return source;
+    }
+
+    private static Map<String, byte[]> read(Path source, Path target) throws IOException {
+        Map<String, byte[]> files = new HashMap<>();
+        for (File file : Utils.getFiles(new String[] { source.toString() })) {
+            String name = target.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+            files.put(file.isDirectory() ? name + "/" : name, file.isDirectory() ? new byte[0] : Files.readAllBytes(file.toPath()));
+        }
+        return files;
+    }
+
+    private static Map<String, byte[]> unzip(InputStream is) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(is)) {
+            byte[] buffer = new byte[8192];
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                int n;
+                while ((n = zis.read(buffer)) >= 0)
+                    bytes.write(buffer, 0, n);
+                entries.put(entry.getName(), bytes.toByteArray());
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,40 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+    @Test
+    public void givenReleasedBuffer_whenAcquire_thenReusedAndCleared() {
+        BufferPool pool = new BufferPool(1024, false, 1);
+        ByteBuffer buffer = pool.acquire();
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        ByteBuffer reused = pool.acquire();
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(1024, reused.remaining());
+        assertNotSame(reused, pool.acquire());
+    }
+
+    @Test
+    public void givenForeignOrExcessBuffers_whenRelease_thenDiscarded() {
+        BufferPool pool = new BufferPool(1024, true, 1);
+        ByteBuffer heap = ByteBuffer.allocate(1024);
+        pool.release(heap);
+        pool.release(ByteBuffer.allocateDirect(512));
+        pool.release(null);
+        ByteBuffer first = pool.acquire();
+        assertTrue(first.isDirect());
+
+        ByteBuffer second = pool.acquire();
+        pool.release(first);
+        pool.release(second);
+        assertSame(first, pool.acquire());
+        assertNotSame(second, pool.acquire());
+    }
+}
@@ -0,0 +1,60 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionPolicyTest {
+    @Test
+    public void givenFiles_whenDecide_thenStoreIncompressible() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        byte[] random = new byte[100_000];
+        new Random(3).nextBytes(random);
+        Files.write(target.resolve("random.bin"), random);
+
+        try (CompressionPolicy policy = new CompressionPolicy(CompressionPolicy.Profile.BALANCED)) {
+            assertTrue(policy.decide(new File("./src/test/resources/Dir1/Dir1_2/Infographics.jpg")).isStored());
+            assertTrue(policy.decide(target.resolve("random.bin").toFile()).isStored());
+            assertFalse(policy.decide(new File("./pom.xml")).isStored());
+        }
+        try (CompressionPolicy policy = new CompressionPolicy(CompressionPolicy.Profile.SPEED)) {
+            assertEquals(Deflater.BEST_SPEED, policy.decide(new File("./pom.xml")).getLevel());
+        }
+    }
+
+    @Test
+    public void givenProfile_whenZipSequentialAndParallel_thenJpegStored() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        List<File> sourceFiles = Utils.getFiles(new String[] { "./pom.xml", "./src/test/resources" });
+        String jpeg = "src/test/resources/Dir1/Dir1_2/Infographics.jpg";
+
+        for (int threads : new int[] { 1, 4 }) {
+            File zipFile = target.resolve("archive-" + threads + ".zip").toFile();
+            try (OutputStream fos = new FileOutputStream(zipFile)) {
+                Utils.zip(sourceFiles, fos, new ArchiveOptions().setThreads(threads).setProfile(CompressionPolicy.Profile.RATIO));
+            }
+            try (ZipFile zip = new ZipFile(zipFile)) {
+                assertEquals(ZipEntry.STORED, zip.getEntry(jpeg).getMethod());
+                assertEquals(ZipEntry.DEFLATED, zip.getEntry("pom.xml").getMethod());
+            }
+            try (FileInputStream fis = new FileInputStream(zipFile)) {
+                Utils.unZip(fis, target.resolve("unzipped-" + threads));
+            }
+            assertEquals(Files.size(Paths.get(jpeg)), Files.size(target.resolve("unzipped-" + threads).resolve(jpeg)));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class IncrementalZipperTest {
+    @Test
+    public void givenPreviousArchive_whenZipIncremental_thenUnchangedCarriedOver() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = target.resolve("source");
+        Files.createDirectories(source);
+        Files.write(source.resolve("static.txt"), "static content static content".getBytes());
+        Files.write(source.resolve("changed.txt"), "old content".getBytes());
+        Files.write(source.resolve("deleted.txt"), "deleted".getBytes());
+
+        Path first = target.resolve("first.zip");
+        zipIncremental(source, target.resolve("missing.zip"), first);
+
+        Files.write(source.resolve("changed.txt"), "new content, longer".getBytes());
+        Files.setLastModifiedTime(source.resolve("changed.txt"), FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        Files.delete(source.resolve("deleted.txt"));
+        Files.write(source.resolve("added.txt"), "added".getBytes());
+
+        Path second = target.resolve("second.zip");
+        zipIncremental(source, first, second);
+
+        String prefix = Utils.getZipEntryName(source);
+        try (FileChannel firstChannel = FileChannel.open(first, StandardOpenOption.READ);
+             FileChannel secondChannel = FileChannel.open(second, StandardOpenOption.READ)) {
+            ZipIndex firstIndex = ZipIndex.read(firstChannel);
+            ZipIndex secondIndex = ZipIndex.read(secondChannel);
+            assertArrayEquals(raw(firstIndex, prefix + "static.txt"), raw(secondIndex, prefix + "static.txt"));
+            assertNull(find(secondIndex, prefix + "deleted.txt"));
+            assertNotNull(find(secondIndex, prefix + "added.txt"));
+            assertNotNull(find(secondIndex, ArchiveManifest.ENTRY_NAME));
+        }
+
+        Path unzipped = target.resolve("unzipped");
+        try (InputStream is = new FileInputStream(second.toFile())) {
+            Utils.unZip(is, unzipped);
+        }
+        assertEquals("new content, longer", new String(Files.readAllBytes(unzipped.resolve(prefix + "changed.txt"))));
+        assertEquals("static content static content", new String(Files.readAllBytes(unzipped.resolve(prefix + "static.txt"))));
+        assertFalse(Files.exists(unzipped.resolve(ArchiveManifest.SERVICE_PREFIX)));
+    }
+
+    @Test
+    public void givenNamesWithLineBreaks_whenZipIncrementalTwice_thenManifestReadable() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = target.resolve("source");
+        Files.createDirectories(source);
+        String[] names = { "line\nbreak.txt", "carriage\rreturn.txt", "back\\slash\\n.txt", "tab\tname.txt" };
+        for (String name : names)
+            Files.write(source.resolve(name), name.getBytes("UTF-8"));
+
+        Path first = target.resolve("first.zip");
+        zipIncremental(source, target.resolve("missing.zip"), first);
+        Path second = target.resolve("second.zip");
+        zipIncremental(source, first, second);
+        zipIncremental(source, second, target.resolve("third.zip"));
+
+        String prefix = Utils.getZipEntryName(source);
+        try (FileChannel firstChannel = FileChannel.open(first, StandardOpenOption.READ);
+             FileChannel secondChannel = FileChannel.open(second, StandardOpenOption.READ)) {
+            ZipIndex firstIndex = ZipIndex.read(firstChannel);
+            ZipIndex secondIndex = ZipIndex.read(secondChannel);
+            ArchiveManifest manifest;
+            try (InputStream is = secondIndex.open(find(secondIndex, ArchiveManifest.ENTRY_NAME))) {
+                manifest = ArchiveManifest.read(is);
+            }
+            for (String name : names) {
+                assertNotNull(name, manifest.get(prefix + name));
+                assertArrayEquals(raw(firstIndex, prefix + name), raw(secondIndex, prefix + name));
+            }
+        }
+    }
+
+    @Test
+    public void givenFirstVersionManifest_whenRead_thenNamesUnchanged() throws IOException {
+        ArchiveManifest manifest = ArchiveManifest.read(new ByteArrayInputStream(
+                "# archiver manifest v1\n1f\t3\t100\tdir/back\\slash.txt\n".getBytes("UTF-8")));
+        assertEquals(3, manifest.get("dir/back\\slash.txt").size);
+        assertEquals(0x1f, manifest.get("dir/back\\slash.txt").crc);
+    }
+
+    @Test
+    public void givenPreviousArchiveWithoutManifest_whenZipIncremental_thenFilesCompressedAgain() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = target.resolve("source");
+        Files.createDirectories(source);
+        Path file = source.resolve("same-size.txt");
+        Files.write(file, "new content".getBytes());
+
+        // Запись с тем же размером и временем в формате DOS, но с другим содержимым: файл изменен
+        // в те же 2 секунды после архивации
+        byte[] old = "old content".getBytes();
+        CRC32 crc = new CRC32();
+        crc.update(old);
+        String name = Utils.getZipEntryName(source) + "same-size.txt";
+        Path base = target.resolve("plain.zip");
+        try (ZipWriter writer = new ZipWriter(new FileOutputStream(base.toFile()))) {
+            ZipRecord record = new ZipRecord(name);
+            record.method = ZipFormat.STORED;
+            record.size = record.compressedSize = old.length;
+            record.crc = crc.getValue();
+            record.dosTime = ZipFormat.javaToDosTime(file.toFile().lastModified());
+            writer.putLocalHeader(record);
+            writer.write(old, 0, old.length);
+            writer.closeEntry(record);
+        }
+
+        Path second = target.resolve("second.zip");
+        zipIncremental(source, base, second);
+
+        Path unzipped = target.resolve("unzipped");
+        try (InputStream is = new FileInputStream(second.toFile())) {
+            Utils.unZip(is, unzipped);
+        }
+        assertEquals("new content", new String(Files.readAllBytes(unzipped.resolve(name))));
+    }
+
+    private static void zipIncremental(Path source, Path base, Path output) throws IOException {
+        try (Stream<File> files = Utils.streamFiles(new String[] { source.toString() });
+             OutputStream os = new FileOutputStream(output.toFile())) {
+            Utils.zip(files, os, new ArchiveOptions().setBaseArchive(base));
+        }
+    }
+
+    private static ZipRecord find(ZipIndex index, String name) {
+        return index.records().stream().filter(r -> r.getName().equals(name)).findFirst().orElse(null);
+    }
+
+    private static byte[] raw(ZipIndex index, String name) throws IOException {
+        ZipRecord record = find(index, name);
+        byte[] data = new byte[(int) record.getCompressedSize()];
+        try (DataInputStream is = new DataInputStream(index.openRaw(record))) {
+            is.readFully(data);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,278 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelUnzipperTest {
+    @Test
+    public void givenZipFile_whenParallelUnzip_thenOk() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+
+        List<File> sourceFiles = Utils.getFiles(new String[] { "./pom.xml", "./src/test/resources" });
+        Path zipFile = target.resolve("archive.zip");
+        try (OutputStream fos = new FileOutputStream(zipFile.toFile())) {
+            Utils.zip(sourceFiles, fos);
+        }
+
+        Utils.unZip(zipFile, target.resolve("unzipped"), new ArchiveOptions().setThreads(4));
+
+        long sourceFilesSize = sourceFiles
+                .stream()
+                .filter(File::isFile)
+                .mapToLong(File::length)
+                .sum();
+        assertEquals(sourceFilesSize, Utils.getFolderSize(target.resolve("unzipped")));
+        assertArrayEquals(Files.readAllBytes(Paths.get("./pom.xml")), Files.readAllBytes(target.resolve("unzipped/pom.xml")));
+    }
+
+    @Test(expected = ExtractionException.class)
+    public void givenBadZipEntry_whenParallelUnzip_thenError() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        Path zipFile = target.resolve("evil.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile.toFile()))) {
+            zos.putNextEntry(new ZipEntry("../../evil.sh"));
+            zos.write(new byte[] { 1, 2, 3 });
+        }
+        Utils.unZip(zipFile, target.resolve("unzipped"), new ArchiveOptions().setThreads(2));
+    }
+
+    @Test
+    public void givenSymlinkInTarget_whenParallelUnzip_thenLinkTargetUntouched() throws IOException {
+        Path root = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path target = root.resolve("target");
+        Files.createDirectories(target);
+        Path outside = root.resolve("outside.txt");
+        Files.write(outside, "снаружи".getBytes("UTF-8"));
+        Files.createSymbolicLink(target.resolve("stored"), Paths.get("../outside.txt"));
+        Files.createSymbolicLink(target.resolve("deflated"), Paths.get("../outside.txt"));
+
+        for (String name : new String[] { "stored", "deflated" }) {
+            Path zipFile = root.resolve(name + ".zip");
+            try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile.toFile()))) {
+                ZipEntry entry = new ZipEntry(name);
+                byte[] data = new byte[] { 1, 2, 3 };
+                if (name.equals("stored")) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                zos.putNextEntry(entry);
+                zos.write(data);
+            }
+            try {
+                Utils.unZip(zipFile, target, new ArchiveOptions().setThreads(2));
+                fail(name);
+            } catch (ExtractionException expected) {
+                // Символическая ссылка на месте файла не открывается
+            }
+            assertEquals("снаружи", new String(Files.readAllBytes(outside), "UTF-8"));
+        }
+    }
+
+    @Test
+    public void givenDuplicatePathsInSolidBlockAndEntries_whenParallelUnzip_thenLastInArchiveWins() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        Path zipFile = target.resolve("duplicates.zip");
+
+        List<ZipRecord> members = new ArrayList<>();
+        ByteArrayOutputStream memberData = new ByteArrayOutputStream();
+        for (String[] member : new String[][] { { "a/./b.txt", "solid" }, { "c.txt", "solid-c" } }) {
+            byte[] data = member[1].getBytes("UTF-8");
+            ZipRecord record = new ZipRecord(member[0]);
+            record.size = data.length;
+            record.crc = crc(data);
+            members.add(record);
+            memberData.write(data);
+        }
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        SolidBlock.writeTable(members, block);
+        memberData.writeTo(block);
+
+        // ZipOutputStream не пишет повторяющиеся имена и служебное поле блока
+        try (ZipWriter writer = new ZipWriter(new FileOutputStream(zipFile.toFile()))) {
+            putStored(writer, "a/b.txt", "first".getBytes("UTF-8"), false);
+            putStored(writer, SolidBlock.name(0), block.toByteArray(), true);
+            putStored(writer, "c.txt", "regular-c".getBytes("UTF-8"), false);
+            putStored(writer, "a//d.txt", "d1".getBytes("UTF-8"), false);
+            putStored(writer, "a/d.txt", "d2".getBytes("UTF-8"), false);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            Path unzipped = target.resolve("unzipped" + i);
+            Utils.unZip(zipFile, unzipped, new ArchiveOptions().setThreads(4));
+            assertEquals("solid", new String(Files.readAllBytes(unzipped.resolve("a/b.txt")), "UTF-8"));
+            assertEquals("regular-c", new String(Files.readAllBytes(unzipped.resolve("c.txt")), "UTF-8"));
+            assertEquals("d2", new String(Files.readAllBytes(unzipped.resolve("a/d.txt")), "UTF-8"));
+        }
+    }
+
+    @Test
+    public void givenWrongChecksum_whenParallelUnzip_thenBrokenFileRemoved() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        Path zipFile = target.resolve("broken.zip");
+        byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile.toFile()))) {
+            zos.putNextEntry(new ZipEntry("deflated.bin"));
+            zos.write(data);
+        }
+        // Размер сжатой записи в центральном каталоге завышен
+        ZipRecord deflated;
+        long offset;
+        try (FileChannel channel = FileChannel.open(zipFile)) {
+            ZipIndex index = ZipIndex.read(channel);
+            deflated = index.records().get(0);
+            offset = index.dataOffset(deflated);
+        }
+        byte[] archive = Files.readAllBytes(zipFile);
+        try (ZipWriter writer = new ZipWriter(new FileOutputStream(zipFile.toFile()))) {
+            ZipRecord stored = new ZipRecord("stored.bin");
+            stored.method = ZipFormat.STORED;
+            stored.size = stored.compressedSize = data.length;
+            stored.crc = crc(data) ^ 1;
+            writer.putLocalHeader(stored);
+            writer.write(data, 0, data.length);
+            writer.closeEntry(stored);
+
+            ZipRecord record = new ZipRecord(deflated.name);
+            record.method = ZipFormat.DEFLATED;
+            record.size = deflated.size + 1;
+            record.compressedSize = deflated.compressedSize;
+            record.crc = deflated.crc;
+            writer.putLocalHeader(record);
+            writer.write(archive, (int) offset, (int) deflated.compressedSize);
+            writer.closeEntry(record);
+        }
+
+        for (String name : new String[] { "stored.bin", "deflated.bin" }) {
+            Path unzipped = target.resolve("unzipped-" + name);
+            try {
+                Utils.unZip(zipFile, unzipped, Collections.singletonList(name), new ArchiveOptions().setThreads(2));
+                fail("Ожидалась ошибка контрольной суммы");
+            } catch (ExtractionException expected) {
+                assertFalse(Files.exists(unzipped.resolve(name)));
+            }
+        }
+    }
+
+    @Test
+    public void givenCodecPool_whenOpenDeflatedRecord_thenInflaterReturnedOnClose() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        Path zipFile = target.resolve("archive.zip");
+        byte[] data = Files.readAllBytes(Paths.get("./pom.xml"));
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile.toFile()))) {
+            zos.putNextEntry(new ZipEntry("pom.xml"));
+            zos.write(data);
+        }
+
+        try (CodecPool codecs = new CodecPool(1, BufferPool.heap());
+             FileChannel channel = FileChannel.open(zipFile)) {
+            Inflater pooled = codecs.inflater();
+            codecs.release(pooled);
+            ZipIndex index = ZipIndex.read(channel);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream is = index.open(index.records().get(0), codecs)) {
+                byte[] buffer = new byte[4096];
+                for (int n; (n = is.read(buffer)) > 0; )
+                    out.write(buffer, 0, n);
+            }
+            assertArrayEquals(data, out.toByteArray());
+            assertSame(pooled, codecs.inflater());
+        }
+    }
+
+    private static void putStored(ZipWriter writer, String name, byte[] data, boolean service) throws IOException {
+        ZipRecord record = new ZipRecord(name);
+        record.method = ZipFormat.STORED;
+        record.size = record.compressedSize = data.length;
+        record.crc = crc(data);
+        record.service = service;
+        writer.putLocalHeader(record);
+        writer.write(data, 0, data.length);
+        writer.closeEntry(record);
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenInvalidFile_whenParallelUnzip_thenError() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get("./src/test/resources/home.txt"), StandardOpenOption.READ)) {
+            Utils.unZip(channel, Paths.get("./target/files"), new ArchiveOptions().setThreads(2));
+        }
+    }
+
+    @Test
+    public void givenZipFile_whenListAndExtractSelected_thenOnlyMatchingEntries() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        Path zipFile = target.resolve("archive.zip");
+        try (OutputStream fos = new FileOutputStream(zipFile.toFile())) {
+            Utils.zip(Utils.getFiles(new String[] { "./pom.xml", "./src/test/resources" }), fos);
+        }
+
+        List<ZipRecord> records = Utils.list(zipFile);
+        assertTrue(records.stream().anyMatch(r -> r.getName().equals("pom.xml") && r.getSize() == new File("./pom.xml").length()));
+        assertTrue(records.stream().anyMatch(r -> r.getName().equals("src/test/resources/Dir1/Dir1_2/Infographics.jpg")));
+
+        Path byName = target.resolve("byName");
+        Utils.unZip(zipFile, byName, Collections.singletonList("pom.xml"), new ArchiveOptions());
+        assertArrayEquals(Files.readAllBytes(Paths.get("./pom.xml")), Files.readAllBytes(byName.resolve("pom.xml")));
+        assertFalse(Files.exists(byName.resolve("src")));
+
+        Path byGlob = target.resolve("byGlob");
+        Utils.unZip(zipFile, byGlob, Arrays.asList("src/**.jpg", "src/test/resources/home.txt"), new ArchiveOptions());
+        assertTrue(Files.exists(byGlob.resolve("src/test/resources/Dir1/Dir1_2/Infographics.jpg")));
+        assertTrue(Files.exists(byGlob.resolve("src/test/resources/home.txt")));
+        assertFalse(Files.exists(byGlob.resolve("pom.xml")));
+
+        Path byDirectory = target.resolve("byDirectory");
+        Utils.unZip(zipFile, byDirectory, Collections.singletonList("src/test/resources/Dir1/"), new ArchiveOptions());
+        assertTrue(Files.exists(byDirectory.resolve("src/test/resources/Dir1/Dir1_2/Infographics.jpg")));
+        assertFalse(Files.exists(byDirectory.resolve("src/test/resources/home.txt")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenNoMatchingEntries_whenExtractSelected_thenError() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        Path zipFile = target.resolve("archive.zip");
+        try (OutputStream fos = new FileOutputStream(zipFile.toFile())) {
+            Utils.zip(Utils.getFiles(new String[] { "./pom.xml" }), fos);
+        }
+        Utils.unZip(zipFile, target.resolve("unzipped"), Collections.singletonList("*.txt"), new ArchiveOptions());
+    }
+}
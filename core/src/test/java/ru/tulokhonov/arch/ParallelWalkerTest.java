@@ -0,0 +1,135 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelWalkerTest {
+    @Test
+    public void givenTree_whenWalkParallel_thenSameFilesAsFilesWalk() throws IOException {
+        Path root = createTree();
+        Set<String> expected;
+        try (Stream<Path> paths = Files.walk(root)) {
+            expected = paths.map(Path::toString).collect(Collectors.toSet());
+        }
+
+        try (Stream<File> files = new ParallelWalker(4, false).walk(root)) {
+            assertEquals(expected, files.map(File::getPath).collect(Collectors.toSet()));
+        }
+        try (Stream<File> files = new ParallelWalker(4, true).walk(root)) {
+            List<File> ordered = files.collect(Collectors.toList());
+            assertEquals(expected, new HashSet<>(ordered.stream().map(File::getPath).collect(Collectors.toList())));
+            assertEquals(root.toString(), ordered.get(0).getPath());
+            assertEquals(root.resolve("a").toString(), ordered.get(1).getPath());
+            assertEquals(root.resolve("a/0.txt").toString(), ordered.get(2).getPath());
+        }
+    }
+
+    @Test
+    public void givenTree_whenCalculateSize_thenSameAsSequential() throws IOException {
+        Path root = createTree();
+        long expected;
+        try (Stream<Path> paths = Files.walk(root)) {
+            expected = paths.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+        }
+        assertEquals(expected, new ParallelWalker(4, false).size(root));
+        assertEquals(expected, Utils.getFolderSize(root));
+    }
+
+    @Test
+    public void givenWalkerThreads_whenStreamFiles_thenAttributesCached() {
+        ArchiveOptions options = new ArchiveOptions().setWalkerThreads(2).setSorted(true);
+        try (Stream<File> files = Utils.streamFiles(new String[] { "./src/test/resources" }, options)) {
+            List<File> list = files.collect(Collectors.toList());
+            assertEquals(Utils.getFiles(new String[] { "./src/test/resources" }).size(), list.size());
+            assertTrue(list.stream().anyMatch(f -> f.isFile() && f.length() == 994013));
+        }
+    }
+
+    @Test
+    public void givenSymlinks_whenCalculateSize_thenLinkedFilesCountedAsBefore() throws IOException {
+        Path root = createTree();
+        try {
+            Files.createSymbolicLink(root.resolve("a/link.txt"), root.resolve("b/d/e/2.txt").toAbsolutePath());
+            Files.createSymbolicLink(root.resolve("b/link"), root.resolve("a").toAbsolutePath());
+        } catch (UnsupportedOperationException | IOException e) {
+            Assume.assumeNoException(e);
+        }
+        long expected;
+        try (Stream<Path> paths = Files.walk(root)) {
+            expected = paths.filter(p -> p.toFile().isFile()).mapToLong(p -> p.toFile().length()).sum();
+        }
+        assertEquals(expected, Utils.getFolderSize(root));
+    }
+
+    @Test
+    public void givenTreeLargerThanQueue_whenStreamFiles_thenWalkerWaitsForConsumer() throws Exception {
+        Path root = Paths.get("./target/files/" + Math.abs(new Random().nextLong()) + "/large");
+        int dirs = 10, filesPerDir = 500;
+        for (int d = 0; d < dirs; d++) {
+            Path dir = Files.createDirectories(root.resolve("d" + d));
+            for (int i = 0; i < filesPerDir; i++)
+                Files.createFile(dir.resolve(i + ".txt"));
+        }
+
+        ArchiveOptions options = new ArchiveOptions().setWalkerThreads(2);
+        try (Stream<File> files = Utils.streamFiles(new String[] { root.toString() }, options)) {
+            Iterator<File> iterator = files.iterator();
+            assertTrue(iterator.hasNext());
+            iterator.next();
+            // Очередь заполнена, обход ждет чтения
+            long deadline = System.currentTimeMillis() + 10_000;
+            boolean blocked;
+            while (!(blocked = walkerBlockedOnQueue()) && System.currentTimeMillis() < deadline)
+                Thread.sleep(20);
+            assertTrue(blocked);
+
+            int count = 1;
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+            assertEquals(1 + dirs + dirs * filesPerDir, count);
+        }
+    }
+
+    private static boolean walkerBlockedOnQueue() {
+        for (StackTraceElement[] stack : Thread.getAllStackTraces().values()) {
+            boolean offer = false;
+            for (StackTraceElement frame : stack) {
+                if (frame.getClassName().equals(ArrayBlockingQueue.class.getName()) && frame.getMethodName().equals("offer"))
+                    offer = true;
+                else if (offer && frame.getClassName().endsWith("ParallelWalker$StreamingWalk"))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path createTree() throws IOException {
+        Path root = Paths.get("./target/files/" + Math.abs(new Random().nextLong()) + "/tree");
+        for (String dir : new String[] { "a", "b/c", "b/d/e" }) {
+            Path path = root.resolve(dir);
+            Files.createDirectories(path);
+            for (int i = 0; i < 3; i++)
+                Files.write(path.resolve(i + ".txt"), new byte[i * 100 + dir.length()]);
+        }
+        return root;
+    }
+}
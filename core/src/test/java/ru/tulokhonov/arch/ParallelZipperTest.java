@@ -0,0 +1,71 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelZipperTest {
+    @Test
+    public void givenChunks_whenCombineCrc_thenEqualsWholeCrc() {
+        byte[] data = new byte[300_000];
+        new Random(1).nextBytes(data);
+        CRC32 whole = new CRC32();
+        whole.update(data, 0, data.length);
+        CRC32 first = new CRC32();
+        first.update(data, 0, 100_000);
+        CRC32 second = new CRC32();
+        second.update(data, 100_000, 200_000);
+        assertEquals(whole.getValue(), ZipFormat.crc32Combine(first.getValue(), second.getValue(), 200_000));
+    }
+
+    @Test
+    public void givenLargeFiles_whenParallelZipAndUnzip_thenOk() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = target.resolve("source");
+        Files.createDirectories(source.resolve("empty-dir"));
+        byte[] random = new byte[ParallelZipper.CHUNK_SIZE * 3 + 17];
+        new Random(2).nextBytes(random);
+        byte[] text = new byte[ParallelZipper.CHUNK_SIZE * 5];
+        for (int i = 0; i < text.length; i++)
+            text[i] = (byte) ("archiver " + (i % 1000)).charAt(i % 9);
+        Files.write(source.resolve("random.bin"), random);
+        Files.write(source.resolve("text.txt"), text);
+        Files.write(source.resolve("exact.bin"), Arrays.copyOf(text, ParallelZipper.CHUNK_SIZE));
+        Files.write(source.resolve("empty.txt"), new byte[0]);
+
+        List<File> sourceFiles = Utils.getFiles(new String[] { source.toString() });
+        File zipFile = target.resolve("archive.zip").toFile();
+        try (OutputStream fos = new FileOutputStream(zipFile)) {
+            Utils.zip(sourceFiles, fos, new ArchiveOptions().setThreads(4).setMemoryBudget(1024 * 1024));
+        }
+
+        // Центральный каталог должен совпадать с содержимым
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(sourceFiles.size(), zip.size());
+            ZipEntry entry = zip.getEntry(Utils.getZipEntryName(source.resolve("text.txt")));
+            assertEquals(text.length, entry.getSize());
+        }
+
+        try (FileInputStream fis = new FileInputStream(zipFile)) {
+            Utils.unZip(fis, target.resolve("unzipped"));
+        }
+        Path unzipped = target.resolve("unzipped").resolve(Utils.getZipEntryName(source));
+        assertArrayEquals(random, Files.readAllBytes(unzipped.resolve("random.bin")));
+        assertArrayEquals(text, Files.readAllBytes(unzipped.resolve("text.txt")));
+        assertEquals(ParallelZipper.CHUNK_SIZE, Files.size(unzipped.resolve("exact.bin")));
+        assertEquals(0, Files.size(unzipped.resolve("empty.txt")));
+        assertEquals(true, Files.isDirectory(unzipped.resolve("empty-dir")));
+    }
+}
@@ -0,0 +1,65 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PathValidatorTest {
+    @Test
+    public void givenGoodEntries_whenResolve_thenInsideTarget() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        PathValidator validator = new PathValidator(target);
+        Path file = validator.resolve("dir/sub/good.txt");
+        assertTrue(file.startsWith(target.toFile().getCanonicalFile().toPath()));
+        try (FileChannel ignored = validator.open(file)) {
+            assertTrue(Files.isDirectory(file.getParent()));
+        }
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    public void givenTraversalOrAbsoluteEntries_whenResolve_thenError() throws IOException {
+        PathValidator validator = new PathValidator(Paths.get("./target/files/" + Math.abs(new Random().nextLong())));
+        for (String name : new String[] { "../../evil.sh", "dir/../../evil.sh", "/etc/evil", "." })
+            try {
+                validator.resolve(name);
+                fail(name);
+            } catch (IOException expected) {
+                // Запись вне папки извлечения
+            }
+    }
+
+    @Test
+    public void givenSymlinkOutsideTarget_whenCreateDirectoriesOrOpen_thenError() throws IOException {
+        Path root = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path outside = root.resolve("outside");
+        Path target = root.resolve("target");
+        Files.createDirectories(outside);
+        Files.createDirectories(target);
+        Files.createSymbolicLink(target.resolve("link"), outside.toAbsolutePath());
+        Files.createSymbolicLink(target.resolve("file.txt"), outside.resolve("file.txt").toAbsolutePath());
+
+        PathValidator validator = new PathValidator(target);
+        try {
+            validator.open(validator.resolve("link/evil.sh"));
+            fail();
+        } catch (IOException expected) {
+            // Папка через символическую ссылку ведет за пределы папки извлечения
+        }
+        try {
+            validator.open(validator.resolve("file.txt")).close();
+            fail();
+        } catch (IOException expected) {
+            // Символическая ссылка на месте файла не открывается
+        }
+        assertFalse(Files.exists(outside.resolve("evil.sh")));
+        assertFalse(Files.exists(outside.resolve("file.txt")));
+    }
+}
@@ -0,0 +1,113 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardsTest {
+    @Test
+    public void givenFiles_whenPlan_thenContiguousShardsOfSimilarSize() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path source = createSource(target);
+        List<File> files = Utils.getFiles(new String[] { source.toString() });
+
+        List<List<File>> shards = Utils.planShards(files, 3);
+        assertEquals(3, shards.size());
+        List<File> joined = new ArrayList<>();
+        long total = 0;
+        for (List<File> shard : shards) {
+            joined.addAll(shard);
+            total += size(shard);
+        }
+        assertEquals(files, joined);
+        for (List<File> shard : shards)
+            assertTrue(Math.abs(size(shard) - total / 3) <= total / 6);
+
+        assertEquals(files, Utils.planShards(files, 1).get(0));
+    }
+
+    @Test
+    public void givenShards_whenWriteSeparatelyAndStitch_thenSingleValidArchive() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path source = createSource(target);
+        ArchiveOptions options = new ArchiveOptions().setWorkingDirectory(target);
+        List<File> files = Utils.getFiles(new String[] { source.toString() });
+
+        ByteArrayOutputStream plan = new ByteArrayOutputStream();
+        Shards.writePlan(Utils.planShards(files, 3), plan, options);
+        assertTrue(new String(plan.toByteArray(), "UTF-8").contains("\tsource" + File.separator + "d1"));
+
+        List<Path> parts = new ArrayList<>();
+        for (int shard = 0; shard < 3; shard++) {
+            List<File> shardFiles = Shards.readPlan(new ByteArrayInputStream(plan.toByteArray()), shard, options);
+            Path part = target.resolve("part-" + shard + ".zip");
+            try (OutputStream os = new FileOutputStream(part.toFile())) {
+                // Части создаются разными способами архивации
+                Utils.zip(shardFiles, os, new ArchiveOptions().setWorkingDirectory(target).setThreads(shard == 1 ? 1 : 2));
+            }
+            parts.add(part);
+        }
+        Path stitched = target.resolve("stitched.zip");
+        try (OutputStream os = new FileOutputStream(stitched.toFile())) {
+            Utils.stitch(parts, os);
+        }
+
+        assertTrue(Utils.verify(stitched, target, new ArchiveOptions()).isOk());
+        try (ZipFile zip = new ZipFile(stitched.toFile())) {
+            assertEquals(files.size(), zip.size());
+        }
+        int entries = 0;
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(stitched.toFile()))) {
+            for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry())
+                entries++;
+        }
+        assertEquals(files.size(), entries);
+        Path unzipped = target.resolve("unzipped");
+        Utils.unZip(stitched, unzipped, new ArchiveOptions().setThreads(2));
+        assertEquals(Utils.getFolderSize(source), Utils.getFolderSize(unzipped.resolve("source")));
+        assertArrayEquals(Files.readAllBytes(source.resolve("d2/f2.bin")), Files.readAllBytes(unzipped.resolve("source/d2/f2.bin")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenPlan_whenShardOutOfRange_thenError() throws IOException {
+        ByteArrayOutputStream plan = new ByteArrayOutputStream();
+        Shards.writePlan(Utils.planShards(new ArrayList<>(), 2), plan, new ArchiveOptions());
+        Shards.readPlan(new ByteArrayInputStream(plan.toByteArray()), 2, new ArchiveOptions());
+    }
+
+    private static Path createSource(Path target) throws IOException {
+        Path source = target.resolve("source");
+        Random random = new Random(13);
+        for (int d = 0; d < 6; d++) {
+            Path dir = source.resolve("d" + d);
+            Files.createDirectories(dir);
+            for (int f = 0; f < 5; f++) {
+                byte[] data = new byte[20_000 + random.nextInt(20_000)];
+                if (f % 2 == 0)
+                    random.nextBytes(data);
+                Files.write(dir.resolve("f" + f + (f % 2 == 0 ? ".bin" : ".txt")), data);
+            }
+        }
+        return source;
+    }
+
+    private static long size(List<File> files) {
+        long size = 0;
+        for (File file : files)
+            size += file.isFile() ? file.length() : 0;
+        return size;
+    }
+}
@@ -0,0 +1,153 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolidZipperTest {
+    private static final int SMALL_FILES = 3000;
+
+    @Test
+    public void givenSmallFiles_whenSolidZipAndUnzip_thenOk() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = createSource(target);
+        List<File> sourceFiles = Utils.getFiles(new String[] { source.toString() });
+
+        File plainZip = target.resolve("plain.zip").toFile();
+        try (OutputStream fos = new FileOutputStream(plainZip)) {
+            Utils.zip(sourceFiles, fos);
+        }
+        for (int threads : new int[] { 1, 4 }) {
+            File solidZip = target.resolve("solid" + threads + ".zip").toFile();
+            try (OutputStream fos = new FileOutputStream(solidZip)) {
+                Utils.zip(sourceFiles, fos, new ArchiveOptions().setSolid(true).setThreads(threads));
+            }
+            assertTrue(solidZip.length() * 2 < plainZip.length());
+
+            List<String> names = Utils.list(solidZip.toPath()).stream().map(ZipRecord::getName).collect(Collectors.toList());
+            assertEquals(sourceFiles.size(), names.size());
+            assertTrue(names.contains(Utils.getZipEntryName(source.resolve("d7/f00007.json"))));
+
+            // Извлечение по центральному каталогу, из потока последовательно и из потока с потоками записи
+            Utils.unZip(solidZip.toPath(), target.resolve("parallel" + threads), new ArchiveOptions().setThreads(4));
+            try (InputStream is = new FileInputStream(solidZip)) {
+                Utils.unZip(is, target.resolve("sequential" + threads), new ArchiveOptions());
+            }
+            try (InputStream is = new FileInputStream(solidZip)) {
+                Utils.unZip(is, target.resolve("streaming" + threads), new ArchiveOptions().setThreads(4));
+            }
+            for (String dir : new String[] { "parallel", "sequential", "streaming" }) {
+                Path unzipped = target.resolve(dir + threads);
+                assertEquals(Utils.getFolderSize(source), Utils.getFolderSize(unzipped.resolve(source)));
+                assertArrayEquals(Files.readAllBytes(source.resolve("large.bin")),
+                        Files.readAllBytes(unzipped.resolve(source).resolve("large.bin")));
+                assertArrayEquals(Files.readAllBytes(source.resolve("d3/f00003.json")),
+                        Files.readAllBytes(unzipped.resolve(source).resolve("d3/f00003.json")));
+                assertTrue(Files.isDirectory(unzipped.resolve(source).resolve("empty-dir")));
+                assertFalse(Files.exists(unzipped.resolve(".archiver")));
+            }
+        }
+    }
+
+    @Test
+    public void givenSolidArchive_whenSelectiveUnzip_thenOnlyMatchingMembers() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = createSource(target);
+        File solidZip = target.resolve("solid.zip").toFile();
+        try (OutputStream fos = new FileOutputStream(solidZip)) {
+            Utils.zip(Utils.getFiles(new String[] { source.toString() }), fos, new ArchiveOptions().setSolid(true).setThreads(2));
+        }
+
+        String member = Utils.getZipEntryName(source.resolve("d5/f00005.json"));
+        Path unzipped = target.resolve("selected");
+        Utils.unZip(solidZip.toPath(), unzipped, Collections.singletonList(member), new ArchiveOptions().setThreads(2));
+        assertArrayEquals(Files.readAllBytes(source.resolve("d5/f00005.json")), Files.readAllBytes(unzipped.resolve(member)));
+        assertEquals(Files.size(source.resolve("d5/f00005.json")), Utils.getFolderSize(unzipped));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenSolidArchive_whenNoMatchingMembers_thenError() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = createSource(target);
+        File solidZip = target.resolve("solid.zip").toFile();
+        try (OutputStream fos = new FileOutputStream(solidZip)) {
+            Utils.zip(Utils.getFiles(new String[] { source.toString() }), fos, new ArchiveOptions().setSolid(true));
+        }
+        Utils.unZip(solidZip.toPath(), target.resolve("selected"), Collections.singletonList("missing/*.json"), new ArchiveOptions());
+    }
+
+    @Test
+    public void givenUserArchiverDirectory_whenZipAndUnzip_thenExtractedAsOrdinaryFiles() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong())).toAbsolutePath().normalize();
+        Path root = target.resolve("root");
+        Files.createDirectories(root.resolve(".archiver/solid"));
+        Files.write(root.resolve(".archiver/solid/000000"), "не блок".getBytes("UTF-8"));
+        Files.write(root.resolve(".archiver/manifest"), "не манифест".getBytes("UTF-8"));
+
+        // Чужой архив с такими именами и архив solid, в котором они попадают в блок вместе с настоящим блоком
+        File foreign = target.resolve("foreign.zip").toFile();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(foreign))) {
+            for (String name : new String[] { ".archiver/solid/000000", ".archiver/manifest" }) {
+                zos.putNextEntry(new ZipEntry(name));
+                zos.write(Files.readAllBytes(root.resolve(name)));
+            }
+        }
+        File solid = target.resolve("solid.zip").toFile();
+        try (OutputStream fos = new FileOutputStream(solid)) {
+            Utils.zip(Utils.getFiles(new String[] { root.resolve(".archiver").toString() }), fos,
+                    new ArchiveOptions().setWorkingDirectory(root).setSolid(true));
+        }
+
+        for (File zip : new File[] { foreign, solid }) {
+            assertTrue(Utils.list(zip.toPath()).stream().anyMatch(r -> r.getName().equals(".archiver/manifest")));
+            assertTrue(Utils.verify(zip.toPath(), null, new ArchiveOptions()).isOk());
+            List<Path> unzipped = new ArrayList<>();
+            Path fromFile = target.resolve(zip.getName() + "-file");
+            Utils.unZip(zip.toPath(), fromFile, new ArchiveOptions().setThreads(2));
+            unzipped.add(fromFile);
+            for (int threads : new int[] { 1, 4 }) {
+                Path fromStream = target.resolve(zip.getName() + "-stream" + threads);
+                Utils.unZip(new ByteArrayInputStream(Files.readAllBytes(zip.toPath())), fromStream,
+                        new ArchiveOptions().setThreads(threads));
+                unzipped.add(fromStream);
+            }
+            for (Path path : unzipped) {
+                assertEquals("не блок", new String(Files.readAllBytes(path.resolve(".archiver/solid/000000")), "UTF-8"));
+                assertEquals("не манифест", new String(Files.readAllBytes(path.resolve(".archiver/manifest")), "UTF-8"));
+            }
+        }
+    }
+
+    private static Path createSource(Path target) throws IOException {
+        Path source = target.resolve("source");
+        Files.createDirectories(source.resolve("empty-dir"));
+        Random random = new Random(5);
+        for (int i = 0; i < SMALL_FILES; i++) {
+            Path file = source.resolve(String.format("d%d/f%05d.json", i % 10, i));
+            Files.createDirectories(file.getParent());
+            String json = String.format("{\"id\": %d, \"name\": \"record-%d\", \"active\": %b, \"score\": %d}%n",
+                    i, i, i % 2 == 0, random.nextInt(100));
+            Files.write(file, json.getBytes("UTF-8"));
+        }
+        Files.write(source.resolve("empty.txt"), new byte[0]);
+        byte[] large = new byte[SolidZipper.MEMBER_LIMIT * 3];
+        random.nextBytes(large);
+        Files.write(source.resolve("large.bin"), large);
+        return source;
+    }
+}
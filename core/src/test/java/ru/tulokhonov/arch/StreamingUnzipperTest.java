@@ -0,0 +1,86 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class StreamingUnzipperTest {
+    @Test
+    public void givenManyEntries_whenStreamUnzipWithWriters_thenOk() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Random random = new Random(11);
+        byte[][] contents = new byte[300][];
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            zos.putNextEntry(new ZipEntry("empty/"));
+            for (int i = 0; i < contents.length; i++) {
+                // Маленькие записи и записи больше ограничения памяти
+                contents[i] = new byte[i % 50 == 0 ? 300_000 + random.nextInt(100_000) : random.nextInt(2000)];
+                random.nextBytes(contents[i]);
+                zos.putNextEntry(new ZipEntry("d" + i % 7 + "/f" + i + ".bin"));
+                zos.write(contents[i]);
+            }
+        }
+
+        ArchiveStatistics statistics = new ArchiveStatistics();
+        Utils.unZip(new ByteArrayInputStream(archive.toByteArray()), target,
+                new ArchiveOptions().setThreads(4).setMemoryBudget(128 * 1024).setListener(statistics));
+
+        for (int i = 0; i < contents.length; i++)
+            assertArrayEquals(contents[i], Files.readAllBytes(target.resolve("d" + i % 7 + "/f" + i + ".bin")));
+        assertEquals(contents.length + 1, statistics.getEntries());
+        assertEquals(true, Files.isDirectory(target.resolve("empty")));
+    }
+
+    @Test
+    public void givenDuplicateNames_whenStreamUnzipWithWriters_thenLastEntryWins() throws IOException {
+        byte[] big = new byte[8 * 1024 * 1024];
+        new Random(13).nextBytes(big);
+        byte[] last = "last".getBytes("UTF-8");
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        // ZipOutputStream не пишет повторяющиеся имена
+        try (ZipWriter writer = new ZipWriter(archive)) {
+            for (byte[] data : new byte[][] { big, last }) {
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                ZipRecord record = new ZipRecord("dup");
+                record.method = ZipFormat.STORED;
+                record.size = record.compressedSize = data.length;
+                record.crc = crc.getValue();
+                writer.putLocalHeader(record);
+                writer.write(data, 0, data.length);
+                writer.closeEntry(record);
+            }
+        }
+
+        for (int i = 0; i < 10; i++) {
+            Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+            Utils.unZip(new ByteArrayInputStream(archive.toByteArray()), target, new ArchiveOptions().setThreads(4));
+            assertArrayEquals(last, Files.readAllBytes(target.resolve("dup")));
+        }
+    }
+
+    @Test(expected = ExtractionException.class)
+    public void givenBadZipEntry_whenStreamUnzipWithWriters_thenError() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            zos.putNextEntry(new ZipEntry("good.txt"));
+            zos.write(new byte[] { 1, 2, 3 });
+            zos.putNextEntry(new ZipEntry("../../evil.sh"));
+            zos.write(new byte[] { 1, 2, 3 });
+        }
+        Utils.unZip(new ByteArrayInputStream(archive.toByteArray()),
+                Paths.get("./target/files/" + Math.abs(new Random().nextLong())), new ArchiveOptions().setThreads(2));
+    }
+}
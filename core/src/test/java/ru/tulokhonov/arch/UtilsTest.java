@@ -0,0 +1,187 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Test;
+import ru.tulokhonov.arch.exceptions.ExtractionException;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UtilsTest {
+    @Test(expected = IOException.class)
+    public void givenBadZipEntry_whenCheckThenThrowException() throws IOException {
+        Utils.slipProtect(new ZipEntry("../../../evil.sh"), Paths.get("./"));
+    }
+
+    @Test
+    public void givenGoodZipEntry_whenCheck_thenOk() throws IOException {
+        Utils.slipProtect(new ZipEntry("dir/good.sh"), Paths.get("./"));
+    }
+
+    @Test
+    public void givenFilesOrDirs_whenZipAndUnzip_thenOk() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target.resolve("zipped"));
+        Files.createDirectories(target.resolve("unzipped"));
+
+        List<File> sourceFiles = Utils.getFiles(new String[] { "./pom.xml", "./src/test/resources" });
+        try (OutputStream fos = new FileOutputStream(target.resolve("zipped/archive.zip").toFile())) {
+            Utils.zip(sourceFiles, fos);
+        }
+
+        File zipFile = new File(target.resolve("zipped/archive.zip").toUri());
+        assertTrue(zipFile.exists());
+
+        // Извлечение файла из архива
+        try (FileInputStream fis = new FileInputStream(zipFile)) {
+            Utils.unZip(fis, target.resolve("unzipped"));
+        }
+        // Сравнение размера папки с распакованными файлами с размером исходных файлов
+        long unzippedFolderSize = Utils.getFolderSize(target.resolve("unzipped"));
+        long sourceFilesSize = sourceFiles
+                .stream()
+                .filter(File::isFile)
+                .mapToLong(File::length)
+                .sum();
+        assertEquals(unzippedFolderSize, sourceFilesSize);
+    }
+
+    @Test
+    public void givenFilesOrDirs_whenStreamAndZip_thenSameAsList() throws IOException {
+        String[] paths = { "./pom.xml", "./src/test/resources" };
+        List<File> sourceFiles = Utils.getFiles(paths);
+        try (Stream<File> files = Utils.streamFiles(paths)) {
+            assertEquals(sourceFiles, files.collect(Collectors.toList()));
+        }
+
+        ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+        try (Stream<File> files = Utils.streamFiles(paths)) {
+            Utils.zip(files, fromStream, new ArchiveOptions());
+        }
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Utils.unZip(new ByteArrayInputStream(fromStream.toByteArray()), target);
+        assertEquals(Utils.getFolderSize(Paths.get("./src/test/resources")), Utils.getFolderSize(target.resolve("src")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenWrongFile_whenStreamFiles_thenErrorBeforeWalk() {
+        Utils.streamFiles(new String[] { "./src/test/resources", "./wrong-file-name" });
+    }
+
+    @Test
+    public void givenBlockedWalk_whenStreamFiles_thenFirstFileBeforeWalkCompletes() throws Exception {
+        CountDownLatch walked = new CountDownLatch(1);
+        AtomicBoolean closed = new AtomicBoolean();
+        Iterator<File> blocked = new Iterator<File>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == 1) {
+                    try {
+                        walked.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return next < 2;
+            }
+
+            @Override
+            public File next() {
+                return new File("file" + next++);
+            }
+        };
+        List<Supplier<Stream<File>>> sources = Arrays.asList(
+                () -> StreamSupport.stream(Spliterators.spliteratorUnknownSize(blocked, 0), false)
+                        .onClose(() -> closed.set(true)),
+                () -> Stream.of(new File("other")));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Stream<File> files = Utils.concat(sources)) {
+            Iterator<File> iterator = files.iterator();
+            Future<File> first = executor.submit(iterator::next);
+            assertEquals(new File("file0"), first.get(5, TimeUnit.SECONDS));
+            walked.countDown();
+            assertEquals(new File("file1"), iterator.next());
+            assertEquals(new File("other"), iterator.next());
+            assertTrue(closed.get());
+            assertFalse(iterator.hasNext());
+        } finally {
+            walked.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void givenOpenSource_whenCloseConcatenated_thenSourceClosed() {
+        AtomicBoolean closed = new AtomicBoolean();
+        List<Supplier<Stream<File>>> sources = Collections.singletonList(
+                () -> Stream.of(new File("a"), new File("b")).onClose(() -> closed.set(true)));
+        try (Stream<File> files = Utils.concat(sources)) {
+            assertEquals(new File("a"), files.iterator().next());
+            assertFalse(closed.get());
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenWrongFile_whenGetFiles_thenError() {
+        List<File> sourceFiles = Utils.getFiles(new String[] { "./wrong-file-name" });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenInvalidName_whenGetFiles_thenError() {
+        Utils.getFiles(new String[] { "../" });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenInvalidInput_whenUnzip_thenError() throws FileNotFoundException {
+        InputStream is = new FileInputStream(new File("./src/test/resources/home.txt"));
+        Utils.unZip(is);
+    }
+
+    @Test
+    public void givenPaths_whenGetZipEntryNames_thenOk() {
+        String folderName = Utils.getZipEntryName(Paths.get("./src/test/resources"));
+        String fileName = Utils.getZipEntryName(Paths.get("./pom.xml"));
+        assertEquals("src/test/resources/", folderName);
+        assertEquals("pom.xml", fileName);
+    }
+
+//    @Test
+//    public void givenFolder_WhenCalculateSize_thenOk() throws IOException {
+//        long folderSize = Utils.getFolderSize(Paths.get("./src/test/resources"));
+//        assertEquals(1000173L, folderSize);
+//    }
+
+    @Test
+    public void givenLargeFile_whenChecksum_thenSameAsHeapCrc() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        byte[] data = new byte[(int) Utils.MAPPED_CHECKSUM_THRESHOLD + 12345];
+        new Random(7).nextBytes(data);
+        Path file = target.resolve("large.bin");
+        Files.write(file, data);
+
+        CRC32 expected = new CRC32();
+        expected.update(data);
+        CRC32 actual = new CRC32();
+        assertEquals(data.length, Utils.checksum(file.toFile(), actual));
+        assertEquals(expected.getValue(), actual.getValue());
+    }
+}
@@ -0,0 +1,92 @@
+package ru.tulokhonov.arch;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class Zip64Test {
+    private static final int MANY_ENTRIES = 70_000;
+    private static final long LARGE_SIZE = 5L * 1024 * 1024 * 1024 + 17;
+
+    @Test
+    public void givenMoreThan65535Entries_whenWrite_thenZip64CentralDirectory() throws IOException {
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Files.createDirectories(target);
+        File zipFile = target.resolve("many.zip").toFile();
+        try (ZipWriter writer = new ZipWriter(new FileOutputStream(zipFile))) {
+            for (int i = 0; i < MANY_ENTRIES; i++) {
+                ZipRecord record = new ZipRecord("e" + i);
+                record.method = ZipFormat.STORED;
+                writer.putLocalHeader(record);
+                writer.closeEntry(record);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(zipFile.toPath())) {
+            ZipIndex index = ZipIndex.read(channel);
+            assertEquals(MANY_ENTRIES, index.records().size());
+            assertEquals("e" + (MANY_ENTRIES - 1), index.records().get(MANY_ENTRIES - 1).name);
+        }
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(MANY_ENTRIES, zip.size());
+        }
+        int count = 0;
+        try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(zipFile)))) {
+            while (zis.getNextEntry() != null)
+                count++;
+        }
+        assertEquals(MANY_ENTRIES, count);
+    }
+
+    /**
+     * Архив больше 4 ГБ из разреженного файла. Запускается только с {@code -Darchiver.largeTests=true}
+     */
+    @Test
+    public void givenMultiGigabyteFile_whenParallelZipAndUnzip_thenOk() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("archiver.largeTests"));
+        Path target = Paths.get("./target/files/" + Math.abs(new Random().nextLong()));
+        Path source = target.resolve("source");
+        Files.createDirectories(source);
+        File large = source.resolve("large.bin").toFile();
+        try (RandomAccessFile file = new RandomAccessFile(large, "rw")) {
+            file.setLength(LARGE_SIZE);
+            file.seek(LARGE_SIZE - 1);
+            file.write(1);
+        }
+
+        File zipFile = target.resolve("large.zip").toFile();
+        try (OutputStream fos = new FileOutputStream(zipFile)) {
+            Utils.zip(Collections.singletonList(large), fos, new ArchiveOptions().setThreads(4));
+        }
+
+        String name = Utils.getZipEntryName(large.toPath());
+        try (FileChannel channel = FileChannel.open(zipFile.toPath())) {
+            ZipRecord record = ZipIndex.read(channel).records().get(0);
+            assertEquals(name, record.name);
+            assertEquals(LARGE_SIZE, record.size);
+        }
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(LARGE_SIZE, zip.getEntry(name).getSize());
+        }
+
+        Files.delete(large.toPath());
+        Utils.unZip(zipFile.toPath(), target.resolve("unzipped"), new ArchiveOptions().setThreads(4));
+        Path unzipped = target.resolve("unzipped").resolve(name);
+        assertTrue(Files.exists(unzipped));
+        assertEquals(LARGE_SIZE, Files.size(unzipped));
+        Files.delete(unzipped);
+    }
+}